@@ -65,6 +65,7 @@ import org.hsqldb.result.ResultLob;
 import org.hsqldb.result.ResultProperties;
 import org.hsqldb.rights.Grantee;
 import org.hsqldb.rights.User;
+import org.hsqldb.scriptio.ScriptWriterBase;
 import org.hsqldb.types.BlobDataID;
 import org.hsqldb.types.ClobDataID;
 import org.hsqldb.types.TimeData;
@@ -116,6 +117,10 @@ public class Session implements SessionInterface {
     public CountUpDownLatch latch = new CountUpDownLatch();
     TimeoutManager          timeoutManager;
 
+    // group commit - log writer and position the commit must be synced to
+    public ScriptWriterBase logSyncWriter;
+    public long             logSyncPosition;
+
     // current settings
     final String       zoneString;
     final int          sessionTimeZoneSeconds;
@@ -592,6 +597,8 @@ public class Session implements SessionInterface {
             logSequences();
         }
 
+        // wait outside the transaction lock for the commit record to be synced
+        database.logger.syncCommit(this);
         endTransaction(true, chain);
 
         if (database != null && !sessionUser.isSystem()
@@ -438,6 +438,13 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
      * FREE_BYTES          BIGINT   total bytes in available file allocation units
      * FREE_COUNT          BIGINT   total # of allocation units available
      * FREE_POS            BIGINT   largest file position allocated + 1
+     * CACHE_HITS          BIGINT   number of objects found in the cache
+     * CACHE_MISSES        BIGINT   number of objects not found in the cache
+     * CACHE_EVICTIONS     BIGINT   number of objects removed to free space
+     * CACHE_SYNC_SAVES    BIGINT   number of evictions that wrote to the file
+     * CACHE_WRITE_BACKS   BIGINT   number of objects written in background
+     * CACHE_OFFHEAP_HITS  BIGINT   number of misses read from off-heap memory
+     * CACHE_OFFHEAP_BYTES BIGINT   bytes of rows held in off-heap memory
      * </pre> <p>
      *
      * <b>Notes:</b> <p>
@@ -472,6 +479,13 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
             addColumn(t, "CACHE_BYTES", CARDINAL_NUMBER);        // not null
             addColumn(t, "FILE_LOST_BYTES", CARDINAL_NUMBER);    // not null
             addColumn(t, "FILE_FREE_POS", CARDINAL_NUMBER);      // not null
+            addColumn(t, "CACHE_HITS", CARDINAL_NUMBER);         // not null
+            addColumn(t, "CACHE_MISSES", CARDINAL_NUMBER);       // not null
+            addColumn(t, "CACHE_EVICTIONS", CARDINAL_NUMBER);    // not null
+            addColumn(t, "CACHE_SYNC_SAVES", CARDINAL_NUMBER);   // not null
+            addColumn(t, "CACHE_WRITE_BACKS", CARDINAL_NUMBER);  // not null
+            addColumn(t, "CACHE_OFFHEAP_HITS", CARDINAL_NUMBER);    // not null
+            addColumn(t, "CACHE_OFFHEAP_BYTES", CARDINAL_NUMBER);   // not null
 
             HsqlName name = HsqlNameManager.newInfoSchemaObjectName(
                 sysTableHsqlNames[SYSTEM_CACHEINFO].name, false,
@@ -490,6 +504,13 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
         final int icache_length    = 4;
         final int ilost_bytes      = 5;
         final int ifree_pos        = 6;
+        final int icache_hits      = 7;
+        final int icache_misses    = 8;
+        final int icache_evictions = 9;
+        final int isync_saves      = 10;
+        final int iwrite_backs     = 11;
+        final int ioffheap_hits    = 12;
+        final int ioffheap_bytes   = 13;
 
         //
         DataFileCache cache = null;
@@ -551,6 +572,18 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
                 ValuePool.getLong(cache.getTotalCachedBlockSize());
             row[ilost_bytes] = ValuePool.getLong(cache.getLostBlockSize());
             row[ifree_pos]   = ValuePool.getLong(cache.getFileFreePos());
+            row[icache_hits] = ValuePool.getLong(cache.getCacheHitCount());
+            row[icache_misses] =
+                ValuePool.getLong(cache.getCacheMissCount());
+            row[icache_evictions] =
+                ValuePool.getLong(cache.getCacheEvictionCount());
+            row[isync_saves] = ValuePool.getLong(cache.getCacheSyncSaveCount());
+            row[iwrite_backs] =
+                ValuePool.getLong(cache.getCacheWriteBackCount());
+            row[ioffheap_hits] =
+                ValuePool.getLong(cache.getCacheOffHeapHitCount());
+            row[ioffheap_bytes] =
+                ValuePool.getLong(cache.getCacheOffHeapBytes());
 
             t.insertSys(session, store, row);
         }
@@ -31,11 +31,14 @@
 
 package org.hsqldb.persist;
 
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.IntIndex;
 import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.lib.ObjectComparator;
 import org.hsqldb.lib.StopWatch;
 import org.hsqldb.map.BaseHashMap;
@@ -48,6 +51,30 @@ import org.hsqldb.map.BaseHashMap;
  * Also provides services for selecting rows to be saved and passing them
  * to DataFileCache.<p>
  *
+ * When the hsqldb.cache_stripes property is larger than 1, the positions of
+ * the cached objects are also held in an index split into stripes by
+ * position hash, each with its own lock. DataFileCache looks up cache hits
+ * in this index without taking its own lock. A hit records the current
+ * access count on the object, which is folded into the access counts used
+ * by cleanUp() at the next sweep.<p>
+ *
+ * When the hsqldb.cache_policy property is 1, objects enter the cache on
+ * probation, with the negated access count at the time they were added.
+ * An object is promoted to a normal access count only when it is accessed
+ * again more than PROBATION_WINDOW accesses after it was added. Repeated
+ * accesses soon after loading, such as those made by a single scan, do not
+ * promote it. cleanUp() removes all objects still on probation before it
+ * removes any promoted objects, so a large scan does not displace the
+ * objects used repeatedly by other queries. A modified object is promoted
+ * at the next sweep, as removing it would first need a synchronous save.<p>
+ *
+ * When the hsqldb.cache_write_back property is larger than 0, DataFileCache
+ * runs a background thread that writes out modified objects not in use,
+ * in file position order, once the cache is filled beyond that percentage
+ * of its row or byte capacity. cleanUp() then finds mostly unchanged objects
+ * to remove and the session that fills the cache seldom writes to the
+ * file.<p>
+ *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
  * @version 2.4.1
  * @since 1.8.0
@@ -66,6 +93,23 @@ public class Cache extends BaseHashMap {
     private CachedObject[] rowTable;
     private long           cacheBytesLength;
 
+    //
+    private final LongKeyHashMap[] stripes;
+    private final int              stripeMask;
+
+    //
+    static final int              PROBATION_WINDOW = 1024;
+    private static final int      HIT_COUNTER_SLOTS = 16;
+    private final boolean         scanResistant;
+    private final AtomicLongArray hitCounts;
+    private long                  missCount;
+    private long                  evictCount;
+
+    //
+    private final int writeBackPercent;
+    private long      syncSaveCount;
+    private long      writeBackCount;
+
     // for testing
     StopWatch saveAllTimer = new StopWatch(false);
     StopWatch shadowTimer  = new StopWatch(false);
@@ -89,12 +133,95 @@ public class Cache extends BaseHashMap {
         reserveCount = dfc instanceof TextCache
                        || dfc instanceof DataFileCacheSession ? 0
                                                               : 8;
+
+        int stripeCount = reserveCount == 0 ? 0
+                                            : dfc.database.logger
+                                                .propCacheStripes;
+
+        scanResistant = reserveCount != 0
+                        && dfc.database.logger.propCachePolicy == 1;
+
+        writeBackPercent = reserveCount == 0 ? 0
+                                             : dfc.database.logger
+                                                 .propCacheWriteBack;
+
+        // counters are spaced apart to avoid sharing a cache line
+        hitCounts = new AtomicLongArray(HIT_COUNTER_SLOTS * 8);
+
+        if (stripeCount > 1) {
+            stripes    = new LongKeyHashMap[stripeCount];
+            stripeMask = stripeCount - 1;
+
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new LongKeyHashMap(capacity / stripeCount + 16);
+            }
+        } else {
+            stripes    = null;
+            stripeMask = 0;
+        }
+    }
+
+    boolean isStriped() {
+        return stripes != null;
     }
 
     long getTotalCachedBlockSize() {
         return cacheBytesLength;
     }
 
+    void countHit(long pos) {
+
+        int hash = (int) (pos ^ (pos >>> 32)) * 0x9E3779B9;
+
+        hitCounts.incrementAndGet(((hash >>> 16) & (HIT_COUNTER_SLOTS - 1))
+                                  * 8);
+    }
+
+    void countMiss() {
+        missCount++;
+    }
+
+    long getHitCount() {
+
+        long count = 0;
+
+        for (int i = 0; i < HIT_COUNTER_SLOTS; i++) {
+            count += hitCounts.get(i * 8);
+        }
+
+        return count;
+    }
+
+    long getMissCount() {
+        return missCount;
+    }
+
+    long getEvictCount() {
+        return evictCount;
+    }
+
+    long getSyncSaveCount() {
+        return syncSaveCount;
+    }
+
+    long getWriteBackCount() {
+        return writeBackCount;
+    }
+
+    boolean isWriteBack() {
+        return writeBackPercent > 0;
+    }
+
+    boolean isAboveWriteBackMark() {
+
+        if (writeBackPercent == 0) {
+            return false;
+        }
+
+        return (long) size() * 100 >= (long) capacity * writeBackPercent
+               || cacheBytesLength * 100 >= bytesCapacity * writeBackPercent;
+    }
+
     /**
      * Returns a row if in memory cache.
      */
@@ -110,13 +237,108 @@ public class Cache extends BaseHashMap {
             return null;
         }
 
-        accessTable[lookup] = ++accessCount;
+        updateAccessCount(lookup, ++accessCount);
 
         CachedObject object = (CachedObject) objectKeyTable[lookup];
 
         return object;
     }
 
+    /**
+     * Returns an object if in the striped index, without locking the cache.
+     * Returns null if the object is not found, is no longer in memory, or the
+     * access counts need resetting under the lock of DataFileCache.
+     */
+    CachedObject getShared(long pos, boolean keep) {
+
+        if (accessCount > ACCESS_MAX) {
+            return null;
+        }
+
+        CachedObject object = (CachedObject) getStripe(pos).get(pos);
+
+        if (object == null) {
+            return null;
+        }
+
+        synchronized (object) {
+            if (keep ? !object.keepInMemory(true)
+                     : !object.isInMemory()) {
+                return null;
+            }
+        }
+
+        object.updateAccessCount(incrementAccessCount());
+
+        return object;
+    }
+
+    private LongKeyHashMap getStripe(long pos) {
+
+        int hash = (int) (pos ^ (pos >>> 32)) * 0x9E3779B9;
+
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    private void removeShared(long pos) {
+
+        if (stripes != null) {
+            getStripe(pos).remove(pos);
+        }
+    }
+
+    /**
+     * Sets the access count of an object, unless it is on probation and the
+     * count is within PROBATION_WINDOW of the count when it was added.
+     */
+    private void updateAccessCount(int lookup, int count) {
+
+        int current = accessTable[lookup];
+
+        if (current < 0 && count + current <= PROBATION_WINDOW) {
+            return;
+        }
+
+        if (count > current) {
+            accessTable[lookup] = count;
+        }
+    }
+
+    /**
+     * Scales down the access counts as BaseHashMap does, but keeps objects
+     * on probation negative, with their scaled count when added.
+     */
+    protected void resetAccessCount() {
+
+        if (!scanResistant) {
+            super.resetAccessCount();
+
+            return;
+        }
+
+        if (accessCount < ACCESS_MAX) {
+            return;
+        }
+
+        for (int i = 0; i < accessTable.length; i++) {
+            int count = accessTable[i];
+
+            if (count < 0) {
+                count = (-count - accessMin) / 2;
+
+                accessTable[i] = count < 1 ? -1
+                                           : -count;
+            } else if (count < accessMin) {
+                accessTable[i] = 0;
+            } else {
+                accessTable[i] = (count - accessMin) / 2;
+            }
+        }
+
+        accessCount = (accessCount - accessMin) / 2;
+        accessMin   = 0;
+    }
+
     private synchronized void updateAndResetAccessCounts() {
 
         if (accessCount > ACCESS_MAX) {
@@ -164,6 +386,10 @@ public class Cache extends BaseHashMap {
 
     boolean preparePut(int storageSize) {
 
+        if (isAboveWriteBackMark()) {
+            dataFileCache.requestWriteBack();
+        }
+
         boolean exceedsCount = size() + reserveCount >= capacity;
         boolean exceedsSize  = storageSize + cacheBytesLength > bytesCapacity;
 
@@ -225,8 +451,16 @@ public class Cache extends BaseHashMap {
                                          + row.getStorageSize(), null);
         }
 
+        if (scanResistant) {
+            accessTable[getObjectLookup(row.getPos())] = -accessCount;
+        }
+
         row.setInMemory(true);
 
+        if (stripes != null) {
+            getStripe(row.getPos()).put(row.getPos(), row);
+        }
+
         cacheBytesLength += row.getStorageSize();
     }
 
@@ -241,6 +475,8 @@ public class Cache extends BaseHashMap {
             return null;
         }
 
+        removeShared(pos);
+
         cacheBytesLength -= r.getStorageSize();
 
         r.setInMemory(false);
@@ -261,6 +497,7 @@ public class Cache extends BaseHashMap {
             if (index >= 0) {
                 o.setInMemory(false);
                 objectIterator.remove();
+                removeShared(pos);
 
                 cacheBytesLength -= o.getStorageSize();
             }
@@ -278,6 +515,7 @@ public class Cache extends BaseHashMap {
             if (pos >= startPos && pos < limitPos) {
                 o.setInMemory(false);
                 objectIterator.remove();
+                removeShared(pos);
 
                 cacheBytesLength -= o.getStorageSize();
             }
@@ -296,9 +534,12 @@ public class Cache extends BaseHashMap {
                 if (r != null) {
                     count = r.getAccessCount();
 
-                    if (count > accessTable[i]) {
-                        accessTable[i] = count;
+                    // a modified object must be saved before it is removed
+                    if (accessTable[i] < 0 && r.hasChanged()) {
+                        accessTable[i] = -accessTable[i];
                     }
+
+                    updateAccessCount(i, count);
                 }
             }
         }
@@ -337,10 +578,13 @@ public class Cache extends BaseHashMap {
         updateAccessCounts();
 
         int savecount    = 0;
-        int removeCount  = size() / 2;
+        int savedCount   = saveRowCount;
+        int removeCount  = size() / 2 - countProbation();
         int accessTarget = all ? accessCount + 1
-                               : getAccessCountCeiling(removeCount,
-                                   removeCount / 8);
+                               : removeCount <= 0 ? accessMin
+                                                  : getAccessCountCeiling(
+                                                      removeCount,
+                                                      removeCount / 8);
         int accessMid = all ? accessCount + 1
                             : (accessMin + accessTarget) / 2;
 
@@ -349,16 +593,21 @@ public class Cache extends BaseHashMap {
         for (; objectIterator.hasNext(); ) {
             CachedObject row = (CachedObject) objectIterator.next();
             int          currentAccessCount = objectIterator.getAccessCount();
-            boolean oldRow = currentAccessCount < accessTarget
-                             && !row.isKeepInMemory();
             boolean newRow = row.isNew()
                              && row.getStorageSize()
                                 >= DataFileCache.initIOBufferSize;
-            boolean saveRow = row.hasChanged() && (oldRow || newRow);
 
-            objectIterator.setAccessCount(accessTarget);
+            // objects on probation that are kept remain on probation
+            if (currentAccessCount >= 0) {
+                objectIterator.setAccessCount(accessTarget);
+            }
 
+            // keep status is checked while locked as getShared() can set it
             synchronized (row) {
+                boolean oldRow = currentAccessCount < accessTarget
+                                 && !row.isKeepInMemory();
+                boolean saveRow = row.hasChanged() && (oldRow || newRow);
+
                 if (saveRow) {
                     rowTable[savecount++] = row;
                 }
@@ -366,8 +615,11 @@ public class Cache extends BaseHashMap {
                 if (oldRow) {
                     row.setInMemory(false);
                     objectIterator.remove();
+                    removeShared(row.getPos());
 
                     cacheBytesLength -= row.getStorageSize();
+
+                    evictCount++;
                 }
             }
 
@@ -382,6 +634,60 @@ public class Cache extends BaseHashMap {
         setAccessCountFloor(accessTarget);
 
         accessCount++;
+
+        if (saveRowCount != savedCount) {
+            syncSaveCount++;
+        }
+    }
+
+    /**
+     * Writes out up to limit modified objects that are not in use. Returns
+     * the number of objects selected.
+     */
+    int writeBack(int limit) {
+
+        int count = 0;
+
+        if (limit > rowTable.length) {
+            limit = rowTable.length;
+        }
+
+        objectIterator.reset();
+
+        for (; objectIterator.hasNext() && count < limit; ) {
+            CachedObject row = (CachedObject) objectIterator.next();
+
+            if (row.hasChanged() && !row.isKeepInMemory()) {
+                rowTable[count++] = row;
+            }
+        }
+
+        if (count > 0) {
+            rowComparator.setType(CachedObjectComparator.COMPARE_POSITION);
+            ArraySort.sort(rowTable, count, rowComparator);
+            dataFileCache.writeBackRows(rowTable, count);
+
+            writeBackCount += count;
+        }
+
+        return count;
+    }
+
+    private int countProbation() {
+
+        if (!scanResistant) {
+            return 0;
+        }
+
+        int count = 0;
+
+        for (int i = 0; i < objectKeyTable.length; i++) {
+            if (objectKeyTable[i] != null && accessTable[i] < 0) {
+                count++;
+            }
+        }
+
+        return count;
     }
 
     void clearUnchanged() {
@@ -395,8 +701,11 @@ public class Cache extends BaseHashMap {
                 if (!row.isKeepInMemory() && !row.hasChanged()) {
                     row.setInMemory(false);
                     objectIterator.remove();
+                    removeShared(row.getPos());
 
                     cacheBytesLength -= row.getStorageSize();
+
+                    evictCount++;
                 }
             }
         }
@@ -470,6 +779,12 @@ public class Cache extends BaseHashMap {
 
         super.clear();
 
+        if (stripes != null) {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i].clear();
+            }
+        }
+
         cacheBytesLength = 0;
     }
 
@@ -32,6 +32,7 @@
 package org.hsqldb.persist;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -137,11 +138,25 @@ public class DataFileCache {
     //
     private RAShadowFile shadowFile;
 
+    // incremented when rows are written or the cache is cleared
+    private volatile long fileChangeCount;
+
+    // serialized rows outside the Java heap
+    private OffHeapRowCache offHeapCache;
+
     //
     ReadWriteLock lock      = new ReentrantReadWriteLock();
     Lock          readLock  = lock.readLock();
     Lock          writeLock = lock.writeLock();
 
+    // background write-back of modified rows
+    static final int         WRITE_BACK_BATCH     = 256;
+    static final int         WRITE_BACK_LOCK_WAIT = 100;
+    private final Object     writeBackMonitor     = new Object();
+    private volatile Thread  writeBackThread;
+    private volatile boolean writeBackRequested;
+    private boolean          writeBackStopped;
+
     public DataFileCache(Database db, String baseFileName) {
 
         initParams(db, baseFileName, false);
@@ -240,6 +255,10 @@ public class DataFileCache {
 
             if (database.isFilesInJar()) {
                 fileType = RAFile.DATA_FILE_JAR;
+            } else if (database.logger.propDirectDataFile) {
+                fileType = RAFile.DATA_FILE_DIRECT;
+            } else if (database.logger.propPreadDataFile) {
+                fileType = RAFile.DATA_FILE_PREAD;
             } else if (isNio) {
                 fileType = RAFile.DATA_FILE_NIO;
             } else {
@@ -394,6 +413,16 @@ public class DataFileCache {
                 spaceManager = new DataSpaceManagerSimple(this, false);
             }
 
+            if (offHeapCache == null
+                    && database.logger.propCacheOffHeapSize > 0) {
+                offHeapCache =
+                    new OffHeapRowCache(database.logger.propCacheOffHeapSize);
+            }
+
+            if (!readonly && cache.isWriteBack()) {
+                startWriteBack();
+            }
+
             logInfoEvent("dataFileCache open end");
         } catch (HsqlException e) {
             throw e;
@@ -645,6 +674,7 @@ public class DataFileCache {
      */
     public void release() {
 
+        stopWriteBack();
         writeLock.lock();
 
         try {
@@ -662,6 +692,10 @@ public class DataFileCache {
             logDetailEvent("dataFileCache file closed");
 
             dataFile = null;
+
+            fileChangeCount++;
+
+            closeOffHeapCache();
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.release", t);
         } finally {
@@ -675,6 +709,7 @@ public class DataFileCache {
      */
     public void close() {
 
+        stopWriteBack();
         writeLock.lock();
 
         try {
@@ -688,6 +723,10 @@ public class DataFileCache {
 
             dataFile = null;
 
+            fileChangeCount++;
+
+            closeOffHeapCache();
+
             boolean empty = fileFreePosition == initialFreePos;
 
             if (empty) {
@@ -713,12 +752,27 @@ public class DataFileCache {
         writeLock.lock();
 
         try {
+            fileChangeCount++;
+
             cache.clear();
+
+            if (offHeapCache != null) {
+                offHeapCache.clear();
+            }
         } finally {
             writeLock.unlock();
         }
     }
 
+    private void closeOffHeapCache() {
+
+        if (offHeapCache != null) {
+            offHeapCache.close();
+
+            offHeapCache = null;
+        }
+    }
+
     public void adjustStoreCount(int adjust) {
 
         writeLock.lock();
@@ -824,12 +878,17 @@ public class DataFileCache {
         }
 
         if (rowIn == null) {
-            if (is180) {
-                rowIn = new RowInputBinary180(new byte[initIOBufferSize]);
-            } else {
-                rowIn = new RowInputBinaryDecode(database.logger.getCrypto(),
-                                                 new byte[initIOBufferSize]);
-            }
+            rowIn = newRowInput(initIOBufferSize);
+        }
+    }
+
+    private RowInputInterface newRowInput(int size) {
+
+        if (is180) {
+            return new RowInputBinary180(new byte[size]);
+        } else {
+            return new RowInputBinaryDecode(database.logger.getCrypto(),
+                                            new byte[size]);
         }
     }
 
@@ -917,6 +976,19 @@ public class DataFileCache {
     public CachedObject get(CachedObject object, PersistentStore store,
                             boolean keep) {
 
+        if (cache.isStriped()) {
+            synchronized (object) {
+                if (keep ? object.keepInMemory(true)
+                         : object.isInMemory()) {
+                    cache.countHit(object.getPos());
+
+                    return object;
+                }
+            }
+
+            return get(object.getPos(), store, keep);
+        }
+
         readLock.lock();
 
         long pos;
@@ -927,6 +999,8 @@ public class DataFileCache {
                     object.keepInMemory(true);
                 }
 
+                cache.countHit(object.getPos());
+
                 return object;
             }
 
@@ -943,6 +1017,8 @@ public class DataFileCache {
                     object.keepInMemory(true);
                 }
 
+                cache.countHit(pos);
+
                 return object;
             }
         } finally {
@@ -961,6 +1037,18 @@ public class DataFileCache {
             return null;
         }
 
+        if (cache.isStriped()) {
+            object = cache.getShared(pos, keep);
+
+            if (object != null) {
+                cache.countHit(pos);
+
+                return object;
+            }
+
+            return getFromFile(pos, size, store, keep);
+        }
+
         readLock.lock();
 
         try {
@@ -971,6 +1059,8 @@ public class DataFileCache {
                     object.keepInMemory(true);
                 }
 
+                cache.countHit(pos);
+
                 return object;
             }
         } finally {
@@ -988,6 +1078,18 @@ public class DataFileCache {
             return null;
         }
 
+        if (cache.isStriped()) {
+            object = cache.getShared(pos, keep);
+
+            if (object != null) {
+                cache.countHit(pos);
+
+                return object;
+            }
+
+            return getFromFile(pos, store, keep);
+        }
+
         readLock.lock();
 
         try {
@@ -998,6 +1100,8 @@ public class DataFileCache {
                     object.keepInMemory(true);
                 }
 
+                cache.countHit(pos);
+
                 return object;
             }
         } finally {
@@ -1010,7 +1114,11 @@ public class DataFileCache {
     private CachedObject getFromFile(long pos, PersistentStore store,
                                      boolean keep) {
 
-        CachedObject object = null;
+        CachedObject object = getFromFileShared(pos, store, keep);
+
+        if (object != null) {
+            return object;
+        }
 
         writeLock.lock();
 
@@ -1022,12 +1130,14 @@ public class DataFileCache {
                     object.keepInMemory(true);
                 }
 
+                cache.countHit(pos);
+
                 return object;
             }
 
             for (int j = 0; j < 2; j++) {
                 try {
-                    readObject(pos);
+                    readObjectCached(pos);
 
                     object = store.get(rowIn);
 
@@ -1068,6 +1178,8 @@ public class DataFileCache {
                 }
             }
 
+            cache.countMiss();
+
             // for text tables with empty rows at the beginning,
             // pos may move forward in readObject
             cache.put(object);
@@ -1088,6 +1200,106 @@ public class DataFileCache {
         }
     }
 
+    /**
+     * Reads a row from the off-heap cache, or with positional reads, under
+     * the read lock, so that misses in different sessions read at the same
+     * time. The row is then added to the cache under the write lock, unless
+     * rows were written or the cache was cleared after the read. Returns null
+     * in that case, or if the row is not in the off-heap cache and the file
+     * does not support positional reads, or the read fails. The caller then
+     * reads the row under the write lock.
+     */
+    private CachedObject getFromFileShared(long pos, PersistentStore store,
+                                           boolean keep) {
+
+        RowInputInterface in = null;
+        CachedObject      object;
+        long              changeCount;
+
+        readLock.lock();
+
+        try {
+            changeCount = fileChangeCount;
+
+            if (offHeapCache != null) {
+                in = newRowInput(0);
+
+                if (!offHeapCache.get(pos, in)) {
+                    in = null;
+                }
+            }
+
+            if (in == null) {
+                if (!(dataFile instanceof RandomAccessPositional)) {
+                    return null;
+                }
+
+                RandomAccessPositional file =
+                    (RandomAccessPositional) dataFile;
+                long filePos = pos * dataFileScale;
+                int  size    = file.readInt(filePos);
+
+                in = newRowInput(size);
+
+                in.resetRow(pos, size);
+                file.read(filePos + 4, in.getBuffer(), 4, size - 4);
+
+                if (offHeapCache != null) {
+                    offHeapCache.put(pos, in.getBuffer(), size);
+                }
+            }
+        } catch (HsqlException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            readLock.unlock();
+        }
+
+        try {
+            object = store.get(in);
+        } catch (HsqlException e) {
+            return null;
+        }
+
+        if (object == null) {
+            return null;
+        }
+
+        writeLock.lock();
+
+        try {
+            if (changeCount != fileChangeCount) {
+                return null;
+            }
+
+            CachedObject existing = cache.get(pos);
+
+            if (existing != null) {
+                if (keep) {
+                    existing.keepInMemory(true);
+                }
+
+                cache.countHit(pos);
+
+                return existing;
+            }
+
+            cache.countMiss();
+            cache.put(object);
+
+            if (keep) {
+                object.keepInMemory(true);
+            }
+
+            store.set(object);
+
+            return object;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     private CachedObject getFromFile(long pos, int size,
                                      PersistentStore store, boolean keep) {
 
@@ -1103,6 +1315,8 @@ public class DataFileCache {
                     object.keepInMemory(true);
                 }
 
+                cache.countHit(pos);
+
                 return object;
             }
 
@@ -1127,6 +1341,7 @@ public class DataFileCache {
                 }
             }
 
+            cache.countMiss();
             cache.putUsingReserve(object);
 
             if (keep) {
@@ -1158,6 +1373,26 @@ public class DataFileCache {
         }
     }
 
+    /**
+     * Reads the row at pos from the off-heap cache if it is there, otherwise
+     * from the file, and stores it in the off-heap cache.
+     */
+    private void readObjectCached(long pos) {
+
+        if (offHeapCache == null) {
+            readObject(pos);
+
+            return;
+        }
+
+        if (offHeapCache.get(pos, rowIn)) {
+            return;
+        }
+
+        readObject(pos);
+        offHeapCache.put(pos, rowIn.getBuffer(), rowIn.getSize());
+    }
+
     private void readObject(long pos) {
 
         try {
@@ -1206,6 +1441,10 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
+            if (offHeapCache != null) {
+                offHeapCache.removeRange(startPos, limitPos);
+            }
+
             cache.releaseRange(startPos, limitPos);
         } finally {
             writeLock.unlock();
@@ -1219,6 +1458,10 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
+            if (offHeapCache != null) {
+                offHeapCache.removeRange(list, fileBlockItemCount);
+            }
+
             cache.releaseRange(list, fileBlockItemCount);
         } finally {
             writeLock.unlock();
@@ -1232,6 +1475,10 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
+            if (offHeapCache != null) {
+                offHeapCache.remove(pos);
+            }
+
             return cache.release(pos);
         } finally {
             writeLock.unlock();
@@ -1286,10 +1533,17 @@ public class DataFileCache {
 
     public void saveRowOutput(long pos) {
 
+        fileChangeCount++;
+
         try {
             dataFile.seek(pos * dataFileScale);
             dataFile.write(rowOut.getOutputStream().getBuffer(), 0,
                            rowOut.getOutputStream().size());
+
+            // the output may be only part of a row
+            if (offHeapCache != null) {
+                offHeapCache.remove(pos);
+            }
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.saveRowOutput", t, pos);
 
@@ -1299,12 +1553,30 @@ public class DataFileCache {
 
     protected void saveRowNoLock(CachedObject row) {
 
+        fileChangeCount++;
+
         try {
             rowOut.reset();
             row.write(rowOut);
             dataFile.seek(row.getPos() * dataFileScale);
             dataFile.write(rowOut.getOutputStream().getBuffer(), 0,
                            rowOut.getOutputStream().size());
+
+            if (offHeapCache != null && !row.isBlock()) {
+                int size = rowOut.getOutputStream().size();
+
+                // only the nodes are written when the row data is unchanged
+                if (size == row.getStorageSize()) {
+                    offHeapCache.put(row.getPos(),
+                                     rowOut.getOutputStream().getBuffer(),
+                                     size);
+                } else {
+                    offHeapCache.update(row.getPos(),
+                                        rowOut.getOutputStream().getBuffer(),
+                                        size);
+                }
+            }
+
             row.setChanged(false);
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.saveRowNoLock", t, row.getPos());
@@ -1313,6 +1585,151 @@ public class DataFileCache {
         }
     }
 
+    /**
+     * Writes out rows selected by the write-back thread. A row that has been
+     * put in use or already saved since it was selected is skipped.
+     */
+    void writeBackRows(CachedObject[] rows, int count) {
+
+        int pageCount = copyShadow(rows, 0, count);
+
+        if (pageCount > 0) {
+            setFileModified();
+        }
+
+        for (int i = 0; i < count; i++) {
+            CachedObject r = rows[i];
+
+            synchronized (r) {
+                if (r.hasChanged() && !r.isKeepInMemory()) {
+                    saveRowNoLock(r);
+                }
+            }
+
+            rows[i] = null;
+        }
+    }
+
+    void requestWriteBack() {
+
+        if (writeBackRequested || writeBackThread == null) {
+            return;
+        }
+
+        synchronized (writeBackMonitor) {
+            writeBackRequested = true;
+
+            writeBackMonitor.notifyAll();
+        }
+    }
+
+    private void startWriteBack() {
+
+        synchronized (writeBackMonitor) {
+            if (writeBackThread != null) {
+                return;
+            }
+
+            writeBackStopped   = false;
+            writeBackRequested = false;
+            writeBackThread    = new Thread(new WriteBackTask(),
+                                         "HSQLDB Write Back " + dataFileName);
+
+            writeBackThread.setDaemon(true);
+            writeBackThread.start();
+        }
+    }
+
+    private void stopWriteBack() {
+
+        Thread thread;
+
+        synchronized (writeBackMonitor) {
+            thread = writeBackThread;
+
+            if (thread == null) {
+                return;
+            }
+
+            writeBackStopped = true;
+
+            writeBackMonitor.notifyAll();
+        }
+
+        if (thread == Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes out one batch of rows if the cache is above the write-back mark.
+     * Returns true if more rows may need writing. The lock is only waited for
+     * a short time, so that a thread holding the lock while it stops the
+     * write-back thread is not blocked.
+     */
+    private boolean writeBack() {
+
+        try {
+            if (!writeLock.tryLock(WRITE_BACK_LOCK_WAIT,
+                                   TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            return false;
+        }
+
+        try {
+            if (dataFile == null || cacheReadonly
+                    || !cache.isAboveWriteBackMark()) {
+                return false;
+            }
+
+            return cache.writeBack(WRITE_BACK_BATCH) == WRITE_BACK_BATCH;
+        } catch (Throwable t) {
+            logSevereEvent("DataFileCache.writeBack", t);
+
+            return false;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private class WriteBackTask implements Runnable {
+
+        public void run() {
+
+            while (true) {
+                synchronized (writeBackMonitor) {
+                    while (!writeBackStopped && !writeBackRequested) {
+                        try {
+                            writeBackMonitor.wait();
+                        } catch (InterruptedException e) {}
+                    }
+
+                    if (writeBackStopped) {
+                        writeBackThread = null;
+
+                        writeBackMonitor.notifyAll();
+
+                        return;
+                    }
+                }
+
+                boolean more = writeBack();
+
+                synchronized (writeBackMonitor) {
+                    writeBackRequested = more;
+                }
+            }
+        }
+    }
+
     protected int copyShadow(CachedObject[] rows, int offset, int count) {
 
         int pageCount = 0;
@@ -1562,6 +1979,42 @@ public class DataFileCache {
         return cache.size();
     }
 
+    public long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    public long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    public long getCacheEvictionCount() {
+        return cache.getEvictCount();
+    }
+
+    public long getCacheSyncSaveCount() {
+        return cache.getSyncSaveCount();
+    }
+
+    public long getCacheWriteBackCount() {
+        return cache.getWriteBackCount();
+    }
+
+    public long getCacheOffHeapHitCount() {
+
+        OffHeapRowCache tier = offHeapCache;
+
+        return tier == null ? 0
+                            : tier.getHitCount();
+    }
+
+    public long getCacheOffHeapBytes() {
+
+        OffHeapRowCache tier = offHeapCache;
+
+        return tier == null ? 0
+                            : tier.getStoredBytes();
+    }
+
     public String getFileName() {
         return dataFileName;
     }
@@ -235,6 +235,13 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "hsqldb.cache_free_count";
     public static final String hsqldb_cache_rows = "hsqldb.cache_rows";
     public static final String hsqldb_cache_size = "hsqldb.cache_size";
+    public static final String hsqldb_cache_stripes =
+        "hsqldb.cache_stripes";
+    public static final String hsqldb_cache_policy = "hsqldb.cache_policy";
+    public static final String hsqldb_cache_write_back =
+        "hsqldb.cache_write_back";
+    public static final String hsqldb_cache_offheap_size =
+        "hsqldb.cache_offheap_size";
     public static final String hsqldb_default_table_type =
         "hsqldb.default_table_type";
     public static final String hsqldb_defrag_limit   = "hsqldb.defrag_limit";
@@ -242,8 +249,16 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String hsqldb_lock_file      = "hsqldb.lock_file";
     public static final String hsqldb_log_data       = "hsqldb.log_data";
     public static final String hsqldb_log_size       = "hsqldb.log_size";
+    public static final String hsqldb_log_format     = "hsqldb.log_format";
     public static final String hsqldb_nio_data_file  = "hsqldb.nio_data_file";
     public static final String hsqldb_nio_max_size   = "hsqldb.nio_max_size";
+    public static final String hsqldb_nio_windowed   = "hsqldb.nio_windowed";
+    public static final String hsqldb_direct_data_file =
+        "hsqldb.direct_data_file";
+    public static final String hsqldb_direct_pool_size =
+        "hsqldb.direct_pool_size";
+    public static final String hsqldb_pread_data_file =
+        "hsqldb.pread_data_file";
     public static final String hsqldb_script_format  = "hsqldb.script_format";
     public static final String hsqldb_temp_directory = "hsqldb.temp_directory";
     public static final String hsqldb_result_max_memory_rows =
@@ -253,6 +268,8 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "hsqldb.write_delay_millis";
     public static final String hsqldb_full_log_replay =
         "hsqldb.full_log_replay";
+    public static final String hsqldb_replay_threads =
+        "hsqldb.replay_threads";
     public static final String hsqldb_large_data  = "hsqldb.large_data";
     public static final String hsqldb_files_space = "hsqldb.files_space";
     public static final String hsqldb_digest      = "hsqldb.digest";
@@ -409,6 +426,15 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_nio_data_file,
                    HsqlProperties.getMeta(hsqldb_nio_data_file, SQL_PROPERTY,
                                           true));
+        dbMeta.put(hsqldb_nio_windowed,
+                   HsqlProperties.getMeta(hsqldb_nio_windowed, SQL_PROPERTY,
+                                          false));
+        dbMeta.put(hsqldb_direct_data_file,
+                   HsqlProperties.getMeta(hsqldb_direct_data_file,
+                                          SQL_PROPERTY, false));
+        dbMeta.put(hsqldb_pread_data_file,
+                   HsqlProperties.getMeta(hsqldb_pread_data_file,
+                                          SQL_PROPERTY, false));
         dbMeta.put(hsqldb_full_log_replay,
                    HsqlProperties.getMeta(hsqldb_full_log_replay,
                                           SQL_PROPERTY, false));
@@ -519,6 +545,16 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                                           0, new int[] {
             0, 1, 3
         }));
+        dbMeta.put(hsqldb_cache_policy,
+                   HsqlProperties.getMeta(hsqldb_cache_policy, SQL_PROPERTY,
+                                          0, new int[] {
+            0, 1
+        }));
+        dbMeta.put(hsqldb_log_format,
+                   HsqlProperties.getMeta(hsqldb_log_format, SQL_PROPERTY,
+                                          0, new int[] {
+            0, 1
+        }));
         dbMeta.put(hsqldb_lob_file_scale,
                    HsqlProperties.getMeta(hsqldb_lob_file_scale, SQL_PROPERTY,
                                           32, new int[] {
@@ -539,6 +575,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_log_size,
                    HsqlProperties.getMeta(hsqldb_log_size, SQL_PROPERTY, 50,
                                           0, 4 * 1024));
+        dbMeta.put(hsqldb_replay_threads,
+                   HsqlProperties.getMeta(hsqldb_replay_threads, SQL_PROPERTY,
+                                          0, 0, 256));
         dbMeta.put(hsqldb_defrag_limit,
                    HsqlProperties.getMeta(hsqldb_defrag_limit, SQL_PROPERTY,
                                           0, 0, 100));
@@ -551,6 +590,15 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_cache_rows,
                    HsqlProperties.getMeta(hsqldb_cache_rows, SQL_PROPERTY,
                                           50000, 100, 4 * 1024 * 1024));
+        dbMeta.put(hsqldb_cache_stripes,
+                   HsqlProperties.getMeta(hsqldb_cache_stripes, SQL_PROPERTY,
+                                          0, 0, 1024));
+        dbMeta.put(hsqldb_cache_write_back,
+                   HsqlProperties.getMeta(hsqldb_cache_write_back,
+                                          SQL_PROPERTY, 0, 0, 95));
+        dbMeta.put(hsqldb_cache_offheap_size,
+                   HsqlProperties.getMeta(hsqldb_cache_offheap_size,
+                                          SQL_PROPERTY, 0, 0, 65536));
         dbMeta.put(hsqldb_cache_free_count,
                    HsqlProperties.getMeta(hsqldb_cache_free_count,
                                           SQL_PROPERTY, 512, 0, 4096));
@@ -558,6 +606,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                    HsqlProperties.getMeta(hsqldb_result_max_memory_rows,
                                           SQL_PROPERTY, 0, 0,
                                           4 * 1024 * 1024));
+        dbMeta.put(hsqldb_direct_pool_size,
+                   HsqlProperties.getMeta(hsqldb_direct_pool_size,
+                                          SQL_PROPERTY, 64, 1, 65536));
         dbMeta.put(hsqldb_nio_max_size,
                    HsqlProperties.getMeta(hsqldb_nio_max_size, SQL_PROPERTY,
                                           256, 64, 262144));
@@ -49,6 +49,7 @@ import org.hsqldb.scriptio.ScriptReaderBase;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.scriptio.ScriptWriterBase;
+import org.hsqldb.scriptio.ScriptWriterBinaryLog;
 import org.hsqldb.scriptio.ScriptWriterEncode;
 import org.hsqldb.scriptio.ScriptWriterText;
 
@@ -677,8 +678,13 @@ public class Log {
 
         try {
             if (crypto == null) {
-                dbLogWriter = new ScriptWriterText(database, logFileName,
-                                                   false, false, false);
+                if (database.logger.propLogFormat == 1) {
+                    dbLogWriter = new ScriptWriterBinaryLog(database,
+                            logFileName);
+                } else {
+                    dbLogWriter = new ScriptWriterText(database, logFileName,
+                                                       false, false, false);
+                }
             } else {
                 dbLogWriter = new ScriptWriterEncode(database, logFileName,
                                                      crypto);
@@ -790,8 +796,11 @@ public class Log {
         if (fa.isStreamElement(logFileName)) {
             boolean fullReplay = database.getURLProperties().isPropertyTrue(
                 HsqlDatabaseProperties.hsqldb_full_log_replay);
+            int threads = database.getURLProperties().getIntegerProperty(
+                HsqlDatabaseProperties.hsqldb_replay_threads, 0);
 
-            ScriptRunner.runScript(database, logFileName, fullReplay);
+            ScriptRunner.runScript(database, logFileName, fullReplay,
+                                   threads);
         }
     }
 
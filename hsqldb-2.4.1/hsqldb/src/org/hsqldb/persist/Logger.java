@@ -110,11 +110,19 @@ public class Logger implements EventLogInterface {
     private boolean propIsFileDatabase;
     boolean         propIncrementBackup;
     boolean         propNioDataFile;
+    boolean         propNioWindowed;
+    boolean         propDirectDataFile;
+    long            propDirectPoolSize;
+    boolean         propPreadDataFile;
     long            propNioMaxSize    = 256 * 1024 * 1024L;
     int             propMaxFreeBlocks = 512;
     int             propMinReuse      = 0;
     private int     propCacheMaxRows;
     private long    propCacheMaxSize;
+    int             propCacheStripes;
+    int             propCachePolicy;
+    int             propCacheWriteBack;
+    long            propCacheOffHeapSize;
     int             propCacheDefragLimit;
     private int     propDataFileScale;
     String          propTextSourceDefault = "";
@@ -130,6 +138,7 @@ public class Logger implements EventLogInterface {
     int             propLobBlockSize = 32 * 1024;
     boolean         propCompressLobs;
     int             propScriptFormat = 0;
+    int             propLogFormat    = 0;
     boolean         propLargeData;
     int             propFileSpaceValue;
     long            propFileTimestamp;
@@ -468,6 +477,31 @@ public class Logger implements EventLogInterface {
             HsqlDatabaseProperties.hsqldb_cache_free_count);
         propMaxFreeBlocks = ArrayUtil.getTwoPowerFloor(propMaxFreeBlocks);
 
+        // log format applies to the .log files written from this open
+        propLogFormat = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_log_format, 0);
+
+        // striped row cache applies to the .data file opened from this open
+        propCacheStripes = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_stripes, 0);
+        propCacheStripes = ArrayUtil.getTwoPowerFloor(propCacheStripes);
+        propCachePolicy = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_policy, 0);
+        propCacheWriteBack = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_write_back, 0);
+        propCacheOffHeapSize = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_offheap_size, 0) * 1024L
+                * 1024L;
+        propPreadDataFile = database.urlProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_pread_data_file, false);
+        propNioWindowed = database.urlProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_nio_windowed, false);
+        propDirectDataFile = database.urlProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_direct_data_file, false);
+        propDirectPoolSize = database.urlProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_direct_pool_size, 64) * 1024L
+                * 1024L;
+
         if (database.urlProperties.isPropertyTrue(
                 HsqlDatabaseProperties.hsqldb_large_data, false)) {
             propLargeData = true;
@@ -1024,6 +1058,26 @@ public class Logger implements EventLogInterface {
         }
     }
 
+    /**
+     * Waits until the commit record written for the session has been synced
+     * by the group commit thread of the log writer. Called after the
+     * transaction lock has been released and deliberately not synchronized
+     * on this object, so that other sessions can write their commit records
+     * while this one waits.
+     */
+    public void syncCommit(Session session) {
+
+        ScriptWriterBase writer = session.logSyncWriter;
+
+        if (writer == null) {
+            return;
+        }
+
+        session.logSyncWriter = null;
+
+        writer.waitForSync(session.logSyncPosition);
+    }
+
     public synchronized void synchLog() {
 
         if (loggingEnabled) {
@@ -1639,6 +1693,11 @@ public class Logger implements EventLogInterface {
                 .toLowerCase();
         }
 
+        if (HsqlDatabaseProperties.hsqldb_log_format.equals(name)) {
+            return ScriptWriterBase.LIST_SCRIPT_FORMATS[propLogFormat]
+                .toLowerCase();
+        }
+
         if (HsqlDatabaseProperties.hsqldb_temp_directory.equals(name)) {
             return tempDirectoryPath;
         }
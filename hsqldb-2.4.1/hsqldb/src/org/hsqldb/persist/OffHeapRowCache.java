@@ -0,0 +1,397 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.IntIndex;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.LongKeyLongValueHashMap;
+import org.hsqldb.rowio.RowInputInterface;
+
+/**
+ * Second level cache of serialized rows of a .data file, keyed by the file
+ * position. The rows are held in direct buffers outside the Java heap, in the
+ * same form as in the file, so a row found here is decoded as if it was read
+ * from the file.
+ *
+ * Rows are appended to segments of fixed size, which are used in turn. When
+ * all segments are in use, the oldest segment is reclaimed. Rows found in the
+ * cache since they were stored are moved to the start of the reclaimed
+ * segment, up to half its size, and the other rows in it are removed. A row
+ * that is stored again is appended and its earlier copy is left unused.
+ *
+ * Methods are synchronized as rows are read under the read lock of the
+ * DataFileCache when the file supports positional reads.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+final class OffHeapRowCache {
+
+    static final int  segmentScale   = 22;
+    static final int  segmentSize    = 1 << segmentScale;
+    static final int  maxSegments    = 1 << 14;
+    static final long referencedFlag = 1L << 62;
+    static final long fieldMask      = 0xffffffL;
+
+    //
+    private final ByteBuffer[]            segments;
+    private final long[][]                segmentKeys;
+    private final int[][]                 segmentOffsets;
+    private final int[]                   segmentKeyCounts;
+    private final LongKeyLongValueHashMap locations;
+    private int                           currentSegment;
+    private int                           segmentOffset;
+    private byte[]                        moveBuffer = new byte[256];
+
+    //
+    private long hitCount;
+    private long storedBytes;
+
+    OffHeapRowCache(long size) {
+
+        long count = size >> segmentScale;
+
+        if (count < 2) {
+            count = 2;
+        }
+
+        if (count > maxSegments) {
+            count = maxSegments;
+        }
+
+        segments         = new ByteBuffer[(int) count];
+        segmentKeys      = new long[(int) count][];
+        segmentOffsets   = new int[(int) count][];
+        segmentKeyCounts = new int[(int) count];
+        locations        = new LongKeyLongValueHashMap();
+    }
+
+    /**
+     * Copies the row at pos into the input and returns true if it is in the
+     * cache, otherwise returns false.
+     */
+    synchronized boolean get(long pos, RowInputInterface in) {
+
+        long location = locations.get(pos, -1);
+
+        if (location < 0) {
+            return false;
+        }
+
+        int        segment = getSegment(location);
+        int        offset  = getOffset(location);
+        int        length  = getLength(location);
+        ByteBuffer buffer  = segments[segment];
+
+        in.resetRow(pos, length);
+        buffer.clear();
+        buffer.position(offset + 4);
+        buffer.get(in.getBuffer(), 4, length - 4);
+
+        if ((location & referencedFlag) == 0) {
+            locations.put(pos, location | referencedFlag);
+        }
+
+        hitCount++;
+
+        return true;
+    }
+
+    /**
+     * Stores the row at pos, which has its length at the start of data.
+     */
+    synchronized void put(long pos, byte[] data, int length) {
+
+        if (length < 4 || length > segmentSize / 2) {
+            remove(pos);
+
+            return;
+        }
+
+        if (segments[currentSegment] == null
+                || segmentOffset + length > segmentSize) {
+            nextSegment();
+        }
+
+        ByteBuffer buffer = segments[currentSegment];
+
+        buffer.clear();
+        buffer.position(segmentOffset);
+        buffer.put(data, 0, length);
+        addLocation(pos, segmentOffset, length);
+
+        segmentOffset += length;
+    }
+
+    /**
+     * Overwrites the start of the stored row at pos when only part of the row
+     * is written to the file.
+     */
+    synchronized void update(long pos, byte[] data, int length) {
+
+        long location = locations.get(pos, -1);
+
+        if (location < 0) {
+            return;
+        }
+
+        if (length > getLength(location)) {
+            remove(pos);
+
+            return;
+        }
+
+        ByteBuffer buffer = segments[getSegment(location)];
+
+        buffer.clear();
+        buffer.position(getOffset(location));
+        buffer.put(data, 0, length);
+    }
+
+    synchronized void remove(long pos) {
+
+        long location = locations.get(pos, -1);
+
+        if (location >= 0) {
+            locations.remove(pos);
+
+            storedBytes -= getLength(location);
+        }
+    }
+
+    /**
+     * Removes the rows with startPos <= pos < limitPos.
+     */
+    synchronized void removeRange(long startPos, long limitPos) {
+
+        Iterator it = locations.keySet().iterator();
+
+        while (it.hasNext()) {
+            long pos = it.nextLong();
+
+            if (pos >= startPos && pos < limitPos) {
+                removeCurrent(it, pos);
+            }
+        }
+    }
+
+    /**
+     * Removes the rows in the file blocks in the list.
+     */
+    synchronized void removeRange(IntIndex list, int fileBlockItemCount) {
+
+        Iterator it = locations.keySet().iterator();
+
+        while (it.hasNext()) {
+            long pos   = it.nextLong();
+            int  block = (int) (pos / fileBlockItemCount);
+
+            if (list.findFirstEqualKeyIndex(block) >= 0) {
+                removeCurrent(it, pos);
+            }
+        }
+    }
+
+    synchronized void clear() {
+
+        locations.clear();
+
+        for (int i = 0; i < segments.length; i++) {
+            segmentKeyCounts[i] = 0;
+        }
+
+        currentSegment = 0;
+        segmentOffset  = 0;
+        storedBytes    = 0;
+    }
+
+    /**
+     * Frees the segments.
+     */
+    synchronized void close() {
+
+        clear();
+
+        for (int i = 0; i < segments.length; i++) {
+            try {
+                RAFileNIO.unmap(segments[i]);
+            } catch (IOException e) {}
+
+            segments[i]       = null;
+            segmentKeys[i]    = null;
+            segmentOffsets[i] = null;
+        }
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    private void nextSegment() {
+
+        if (segments[currentSegment] != null) {
+            currentSegment++;
+
+            if (currentSegment == segments.length) {
+                currentSegment = 0;
+            }
+        }
+
+        segmentOffset = 0;
+
+        if (segments[currentSegment] == null) {
+            segments[currentSegment]       =
+                ByteBuffer.allocateDirect(segmentSize);
+            segmentKeys[currentSegment]    = new long[1024];
+            segmentOffsets[currentSegment] = new int[1024];
+
+            return;
+        }
+
+        reclaimSegment(currentSegment);
+    }
+
+    /**
+     * Removes the rows still stored in the segment, except for rows found in
+     * the cache since they were stored, which are moved to the start. Rows
+     * are visited in offset order, so a move never overwrites a row that is
+     * yet to be visited.
+     */
+    private void reclaimSegment(int segment) {
+
+        ByteBuffer buffer    = segments[segment];
+        long[]     keys      = segmentKeys[segment];
+        int[]      offsets   = segmentOffsets[segment];
+        int        keyCount  = segmentKeyCounts[segment];
+        int        keepLimit = segmentSize / 2;
+
+        segmentKeyCounts[segment] = 0;
+
+        for (int i = 0; i < keyCount; i++) {
+            long pos      = keys[i];
+            long location = locations.get(pos, -1);
+
+            // the row was removed or stored again
+            if (location < 0 || getSegment(location) != segment
+                    || getOffset(location) != offsets[i]) {
+                continue;
+            }
+
+            int length = getLength(location);
+            int offset = offsets[i];
+
+            if ((location & referencedFlag) == 0
+                    || segmentOffset + length > keepLimit) {
+                locations.remove(pos);
+
+                storedBytes -= length;
+
+                continue;
+            }
+
+            if (offset != segmentOffset) {
+                if (moveBuffer.length < length) {
+                    moveBuffer = new byte[length];
+                }
+
+                buffer.clear();
+                buffer.position(offset);
+                buffer.get(moveBuffer, 0, length);
+                buffer.position(segmentOffset);
+                buffer.put(moveBuffer, 0, length);
+            }
+
+            addLocation(pos, segmentOffset, length);
+
+            segmentOffset += length;
+        }
+    }
+
+    private void removeCurrent(Iterator it, long pos) {
+
+        storedBytes -= getLength(locations.get(pos, -1));
+
+        it.remove();
+    }
+
+    private void addLocation(long pos, int offset, int length) {
+
+        long location = ((long) currentSegment << 48)
+                        | ((long) offset << 24) | length;
+        long previous = locations.get(pos, -1);
+
+        if (previous >= 0) {
+            storedBytes -= getLength(previous);
+        }
+
+        locations.put(pos, location);
+
+        storedBytes += length;
+
+        long[] keys    = segmentKeys[currentSegment];
+        int[]  offsets = segmentOffsets[currentSegment];
+        int    count   = segmentKeyCounts[currentSegment];
+
+        if (count == keys.length) {
+            keys    = (long[]) ArrayUtil.resizeArray(keys, count * 2);
+            offsets = (int[]) ArrayUtil.resizeArray(offsets, count * 2);
+            segmentKeys[currentSegment]    = keys;
+            segmentOffsets[currentSegment] = offsets;
+        }
+
+        keys[count]    = pos;
+        offsets[count] = offset;
+
+        segmentKeyCounts[currentSegment]++;
+    }
+
+    private static int getSegment(long location) {
+        return (int) ((location & ~referencedFlag) >>> 48);
+    }
+
+    private static int getOffset(long location) {
+        return (int) ((location >>> 24) & fieldMask);
+    }
+
+    private static int getLength(long location) {
+        return (int) (location & fieldMask);
+    }
+}
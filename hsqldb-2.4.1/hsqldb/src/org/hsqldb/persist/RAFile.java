@@ -62,6 +62,8 @@ final class RAFile implements RandomAccessInterface {
     static final int DATA_FILE_STORED = 3;
     static final int DATA_FILE_SINGLE = 4;
     static final int DATA_FILE_TEXT   = 5;
+    static final int DATA_FILE_PREAD  = 6;
+    static final int DATA_FILE_DIRECT = 7;
 
     //
     static final int  bufferScale = 12;
@@ -147,11 +149,17 @@ final class RAFile implements RandomAccessInterface {
                                    true);
         } else if (type == DATA_FILE_RAF) {
             return new RAFile(database.logger, name, readonly, true, false);
+        } else if (type == DATA_FILE_PREAD) {
+            return new RAFilePositional(database.logger, name, readonly);
+        } else if (type == DATA_FILE_DIRECT) {
+            return new RAFileDirect(database.logger, name, readonly,
+                                    database.logger.propDirectPoolSize);
         } else {
             java.io.File fi     = new java.io.File(name);
             long         length = fi.length();
 
-            if (length > database.logger.propNioMaxSize) {
+            if (length > database.logger.propNioMaxSize
+                    && !database.logger.propNioWindowed) {
                 return new RAFile(database.logger, name, readonly, true,
                                   false);
             }
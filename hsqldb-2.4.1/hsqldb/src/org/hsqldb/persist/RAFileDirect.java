@@ -0,0 +1,625 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.hsqldb.Database;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.DoubleIntIndex;
+import org.hsqldb.lib.LongKeyIntValueHashMap;
+
+/**
+ * Block-aligned version of ScaledRAFile. This class is used only for storing
+ * a CACHED TABLE .data file and cannot be used for TEXT TABLE source files.
+ *
+ * All reads and writes go through a pool of fixed size pages held in direct
+ * buffers outside the Java heap. Pages are read and written whole, at page
+ * aligned positions. Where the JVM supports ExtendedOpenOption.DIRECT, the
+ * file is opened for direct I/O and its pages are not kept in the operating
+ * system file cache. Otherwise the file is opened for normal I/O.
+ *
+ * The pool is allocated in chunks up to its maximum size. Pages are replaced
+ * with the clock algorithm and a modified page is written when it is
+ * replaced or when synch() is called.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+final class RAFileDirect implements RandomAccessInterface {
+
+    static final int defaultPageSize = 4096;
+    static final int chunkScale      = 8;
+    static final int chunkFrames     = 1 << chunkScale;
+    static final int chunkMask       = chunkFrames - 1;
+
+    //
+    final EventLogInterface      logger;
+    final String                 fileName;
+    final boolean                readOnly;
+    final int                    pageSize;
+    final int                    pageScale;
+    final int                    maxFrames;
+    boolean                      isDirect;
+    FileChannel                  channel;
+    long                         fileLength;
+    long                         physicalLength;
+    long                         seekPosition;
+    final byte[]                 valueBuffer = new byte[8];
+    final LongKeyIntValueHashMap pageMap = new LongKeyIntValueHashMap();
+
+    // pool
+    ByteBuffer[] chunkBases      = new ByteBuffer[]{};
+    ByteBuffer[] chunks          = new ByteBuffer[]{};
+    long[]       framePages      = new long[]{};
+    boolean[]    frameModified   = new boolean[]{};
+    boolean[]    frameReferenced = new boolean[]{};
+    int          frameCount;
+    int          clockHand;
+    byte[]       zeroBytes;
+
+    RAFileDirect(EventLogInterface logger, String name, boolean readOnly,
+                 long poolSize) throws IOException {
+
+        this.logger   = logger;
+        this.fileName = name;
+        this.readOnly = readOnly;
+
+        Path path      = Paths.get(name);
+        int  blockSize = getBlockSize(path);
+
+        pageSize = blockSize > defaultPageSize
+                   && Integer.bitCount(blockSize) == 1 ? blockSize
+                                                       : defaultPageSize;
+        pageScale = Integer.numberOfTrailingZeros(pageSize);
+
+        long frames = ArrayUtil.getBinaryNormalisedCeiling(poolSize
+            / pageSize, chunkScale);
+
+        if (frames < chunkFrames) {
+            frames = chunkFrames;
+        }
+
+        if (frames > Integer.MAX_VALUE - chunkFrames) {
+            frames = Integer.MAX_VALUE - chunkFrames;
+        }
+
+        maxFrames = (int) frames;
+
+        OpenOption[] options = readOnly
+                               ? new OpenOption[]{ StandardOpenOption.READ }
+                               : new OpenOption[] {
+            StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE
+        };
+        OpenOption direct = getDirectOption();
+
+        if (direct != null && pageSize % blockSize == 0) {
+            OpenOption[] directOptions =
+                (OpenOption[]) ArrayUtil.resizeArray(options,
+                    options.length + 1);
+
+            directOptions[options.length] = direct;
+
+            try {
+                channel  = FileChannel.open(path, directOptions);
+                isDirect = true;
+            } catch (IOException e) {
+                logger.logWarningEvent("direct I/O not available: "
+                                       + name, e);
+            } catch (UnsupportedOperationException e) {
+                logger.logWarningEvent("direct I/O not available: "
+                                       + name, e);
+            }
+        }
+
+        if (channel == null) {
+            channel = FileChannel.open(path, options);
+        }
+
+        fileLength     = channel.size();
+        physicalLength = fileLength;
+
+        logger.logDetailEvent("direct data file open, page size " + pageSize
+                              + ", pool pages " + maxFrames
+                              + ", direct I/O " + isDirect);
+    }
+
+    public long length() throws IOException {
+        return fileLength;
+    }
+
+    public void seek(long position) throws IOException {
+
+        if (readOnly && fileLength < position) {
+            throw new IOException("read beyond end of file");
+        }
+
+        seekPosition = position;
+    }
+
+    public long getFilePointer() throws IOException {
+        return seekPosition;
+    }
+
+    public int read() throws IOException {
+
+        if (seekPosition >= fileLength) {
+            return -1;
+        }
+
+        int frame = getFrame(seekPosition >> pageScale, true);
+        int index = getFrameOffset(frame)
+                    + (int) (seekPosition & (pageSize - 1));
+        int val   = chunks[frame >> chunkScale].get(index) & 0xff;
+
+        seekPosition++;
+
+        return val;
+    }
+
+    public void read(byte[] b, int offset, int length) throws IOException {
+
+        if (seekPosition + length > fileLength) {
+            throw new EOFException();
+        }
+
+        try {
+            while (length > 0) {
+                int pageOffset = (int) (seekPosition & (pageSize - 1));
+                int count      = pageSize - pageOffset;
+
+                if (count > length) {
+                    count = length;
+                }
+
+                int        frame = getFrame(seekPosition >> pageScale, true);
+                ByteBuffer chunk = chunks[frame >> chunkScale];
+
+                chunk.clear();
+                chunk.position(getFrameOffset(frame) + pageOffset);
+                chunk.get(b, offset, count);
+
+                seekPosition += count;
+                offset       += count;
+                length       -= count;
+            }
+        } catch (IOException e) {
+            logger.logWarningEvent("failed to read a byte array", e);
+
+            throw e;
+        }
+    }
+
+    public int readInt() throws IOException {
+
+        read(valueBuffer, 0, 4);
+
+        return ((valueBuffer[0] & 0xff) << 24)
+               | ((valueBuffer[1] & 0xff) << 16)
+               | ((valueBuffer[2] & 0xff) << 8) | (valueBuffer[3] & 0xff);
+    }
+
+    public long readLong() throws IOException {
+
+        read(valueBuffer, 0, 8);
+
+        long value = 0;
+
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (valueBuffer[i] & 0xff);
+        }
+
+        return value;
+    }
+
+    public void write(byte[] b, int offset, int length) throws IOException {
+
+        try {
+            while (length > 0) {
+                int pageOffset = (int) (seekPosition & (pageSize - 1));
+                int count      = pageSize - pageOffset;
+
+                if (count > length) {
+                    count = length;
+                }
+
+                // a page that is overwritten whole is not read first
+                int frame = getFrame(seekPosition >> pageScale,
+                                     count != pageSize);
+                ByteBuffer chunk = chunks[frame >> chunkScale];
+
+                chunk.clear();
+                chunk.position(getFrameOffset(frame) + pageOffset);
+                chunk.put(b, offset, count);
+
+                frameModified[frame] = true;
+                seekPosition         += count;
+                offset               += count;
+                length               -= count;
+            }
+
+            if (fileLength < seekPosition) {
+                fileLength = seekPosition;
+            }
+        } catch (IOException e) {
+            logger.logWarningEvent("failed to write a byte array", e);
+
+            throw e;
+        }
+    }
+
+    public void writeInt(int i) throws IOException {
+
+        valueBuffer[0] = (byte) (i >>> 24);
+        valueBuffer[1] = (byte) (i >>> 16);
+        valueBuffer[2] = (byte) (i >>> 8);
+        valueBuffer[3] = (byte) i;
+
+        write(valueBuffer, 0, 4);
+    }
+
+    public void writeLong(long i) throws IOException {
+
+        for (int j = 7; j >= 0; j--) {
+            valueBuffer[j] = (byte) i;
+            i              >>>= 8;
+        }
+
+        write(valueBuffer, 0, 8);
+    }
+
+    public void close() throws IOException {
+
+        try {
+            if (!readOnly) {
+                writeModifiedPages();
+            }
+
+            logger.logDetailEvent("direct data file close, size: "
+                                  + fileLength);
+        } finally {
+            channel.close();
+
+            for (int i = 0; i < chunkBases.length; i++) {
+                RAFileNIO.unmap(chunkBases[i]);
+
+                chunkBases[i] = null;
+                chunks[i]     = null;
+            }
+
+            pageMap.clear();
+
+            frameCount = 0;
+        }
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * The length is extended in the pool. The file is extended when the
+     * last pages are written.
+     */
+    public boolean ensureLength(long newLength) {
+
+        if (newLength > fileLength) {
+            fileLength = newLength;
+        }
+
+        return true;
+    }
+
+    public boolean setLength(long newLength) {
+
+        try {
+            writeModifiedPages();
+
+            long firstPage = newLength >> pageScale;
+
+            for (int i = 0; i < frameCount; i++) {
+                if (framePages[i] >= firstPage) {
+                    pageMap.remove(framePages[i]);
+
+                    framePages[i]      = -1;
+                    frameReferenced[i] = false;
+                }
+            }
+
+            if (newLength < physicalLength) {
+                channel.truncate(newLength);
+
+                physicalLength = newLength;
+            }
+
+            fileLength   = newLength;
+            seekPosition = 0;
+
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    public Database getDatabase() {
+        return null;
+    }
+
+    public void synch() {
+
+        try {
+            writeModifiedPages();
+            channel.force(true);
+        } catch (Throwable t) {
+            logger.logSevereEvent("direct data file sync error ", t);
+
+            throw Error.error(t, ErrorCode.FILE_IO_ERROR, null);
+        }
+    }
+
+    /**
+     * Returns the pool frame of the page, reading the page into a new frame
+     * if it is not in the pool.
+     */
+    private int getFrame(long page, boolean load) throws IOException {
+
+        int frame = pageMap.get(page, -1);
+
+        if (frame >= 0) {
+            frameReferenced[frame] = true;
+
+            return frame;
+        }
+
+        if (frameCount < maxFrames) {
+            frame = newFrame();
+        } else {
+            frame = getReplacementFrame();
+        }
+
+        if (load) {
+            readPage(frame, page);
+        }
+
+        framePages[frame]      = page;
+        frameModified[frame]   = false;
+        frameReferenced[frame] = true;
+
+        pageMap.put(page, frame);
+
+        return frame;
+    }
+
+    private int newFrame() {
+
+        if ((frameCount & chunkMask) == 0) {
+            int        chunkIndex = frameCount >> chunkScale;
+            int        chunkBytes = pageSize << chunkScale;
+            ByteBuffer base = ByteBuffer.allocateDirect(chunkBytes + pageSize);
+
+            chunkBases = (ByteBuffer[]) ArrayUtil.resizeArray(chunkBases,
+                    chunkIndex + 1);
+            chunks = (ByteBuffer[]) ArrayUtil.resizeArray(chunks,
+                    chunkIndex + 1);
+            framePages = (long[]) ArrayUtil.resizeArray(framePages,
+                    frameCount + chunkFrames);
+            frameModified = (boolean[]) ArrayUtil.resizeArray(frameModified,
+                    frameCount + chunkFrames);
+            frameReferenced =
+                (boolean[]) ArrayUtil.resizeArray(frameReferenced,
+                                                  frameCount + chunkFrames);
+            chunkBases[chunkIndex] = base;
+            chunks[chunkIndex]     = getAlignedSlice(base, pageSize);
+        }
+
+        return frameCount++;
+    }
+
+    /**
+     * Clock replacement. The frame is written first if modified.
+     */
+    private int getReplacementFrame() throws IOException {
+
+        while (true) {
+            int frame = clockHand;
+
+            clockHand++;
+
+            if (clockHand == frameCount) {
+                clockHand = 0;
+            }
+
+            if (framePages[frame] < 0) {
+                return frame;
+            }
+
+            if (frameReferenced[frame]) {
+                frameReferenced[frame] = false;
+
+                continue;
+            }
+
+            if (frameModified[frame]) {
+                writePage(frame);
+            }
+
+            pageMap.remove(framePages[frame]);
+
+            framePages[frame] = -1;
+
+            return frame;
+        }
+    }
+
+    private int getFrameOffset(int frame) {
+        return (frame & chunkMask) << pageScale;
+    }
+
+    private ByteBuffer getPageBuffer(int frame) {
+
+        ByteBuffer chunk  = chunks[frame >> chunkScale];
+        int        offset = getFrameOffset(frame);
+
+        chunk.clear();
+        chunk.position(offset);
+        chunk.limit(offset + pageSize);
+
+        return chunk;
+    }
+
+    private void readPage(int frame, long page) throws IOException {
+
+        long       position = (page << pageScale) - getFrameOffset(frame);
+        ByteBuffer buffer   = getPageBuffer(frame);
+
+        // a direct read returns less than a page only at end of file
+        while (buffer.hasRemaining()) {
+            long filePosition = position + buffer.position();
+
+            if (filePosition >= physicalLength) {
+                break;
+            }
+
+            if (channel.read(buffer, filePosition) <= 0) {
+                break;
+            }
+        }
+
+        if (buffer.hasRemaining()) {
+            if (zeroBytes == null) {
+                zeroBytes = new byte[pageSize];
+            }
+
+            buffer.put(zeroBytes, 0, buffer.remaining());
+        }
+    }
+
+    private void writePage(int frame) throws IOException {
+
+        long       pagePosition = framePages[frame] << pageScale;
+        long       position     = pagePosition - getFrameOffset(frame);
+        ByteBuffer buffer       = getPageBuffer(frame);
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+
+        frameModified[frame] = false;
+
+        if (physicalLength < pagePosition + pageSize) {
+            physicalLength = pagePosition + pageSize;
+        }
+    }
+
+    /**
+     * Writes the modified pages in file position order.
+     */
+    private void writeModifiedPages() throws IOException {
+
+        DoubleIntIndex pages = new DoubleIntIndex(frameCount, true);
+
+        pages.setKeysSearchTarget();
+
+        for (int i = 0; i < frameCount; i++) {
+            if (frameModified[i]) {
+                pages.addUnsorted((int) framePages[i], i);
+            }
+        }
+
+        pages.sortOnKeys();
+
+        for (int i = 0; i < pages.size(); i++) {
+            writePage(pages.getValue(i));
+        }
+    }
+
+    private static int getBlockSize(Path path) {
+
+        try {
+            Path existing = Files.exists(path) ? path
+                                               : path.toAbsolutePath()
+                                                   .getParent();
+            FileStore store = Files.getFileStore(existing);
+            Method method = FileStore.class.getMethod("getBlockSize");
+            int    size   = ((Long) method.invoke(store)).intValue();
+
+            return size > 0 ? size
+                            : defaultPageSize;
+        } catch (Throwable t) {
+
+            // before Java 10
+            return defaultPageSize;
+        }
+    }
+
+    private static OpenOption getDirectOption() {
+
+        try {
+            Class<?> optionClass =
+                Class.forName("com.sun.nio.file.ExtendedOpenOption");
+
+            return (OpenOption) optionClass.getField("DIRECT").get(null);
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer getAlignedSlice(ByteBuffer buffer,
+            int alignment) {
+
+        try {
+            Method method = ByteBuffer.class.getMethod("alignedSlice",
+                int.class);
+
+            return (ByteBuffer) method.invoke(buffer,
+                                              Integer.valueOf(alignment));
+        } catch (Throwable t) {
+
+            // before Java 9 - direct I/O is not used
+            return buffer;
+        }
+    }
+}
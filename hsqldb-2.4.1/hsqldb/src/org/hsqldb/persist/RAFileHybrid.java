@@ -45,7 +45,7 @@ import org.hsqldb.Database;
  * closed and a new one opened, up to the maximum size.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.3.3
+ * @version 2.4.1
  * @since 1.7.2
  */
 public final class RAFileHybrid implements RandomAccessInterface {
@@ -159,7 +159,8 @@ public final class RAFileHybrid implements RandomAccessInterface {
         long currentPosition = 0;
 
         if (store == null) {
-            preNio = requiredPosition <= database.logger.propNioMaxSize;
+            preNio = requiredPosition <= database.logger.propNioMaxSize
+                     || database.logger.propNioWindowed;
         } else {
             currentPosition = store.getFilePointer();
 
@@ -169,9 +170,21 @@ public final class RAFileHybrid implements RandomAccessInterface {
 
         if (preNio && initialMaxLength <= requiredPosition) {
             try {
-                store = new RAFileNIO(database.logger, fileName, isReadOnly,
-                                      requiredPosition,
-                                      database.logger.propNioMaxSize);
+                if (database.logger.propNioWindowed) {
+
+                    // nio max size limits the mapped segments, not the file
+                    int windowLimit =
+                        (int) (database.logger.propNioMaxSize
+                               >> RAFileNIO.largeBufferScale);
+
+                    store = new RAFileNIO(database.logger, fileName,
+                                          isReadOnly, requiredPosition,
+                                          Long.MAX_VALUE, windowLimit);
+                } else {
+                    store = new RAFileNIO(database.logger, fileName,
+                                          isReadOnly, requiredPosition,
+                                          database.logger.propNioMaxSize);
+                }
 
                 store.seek(currentPosition);
 
@@ -34,8 +34,10 @@ package org.hsqldb.persist;
 import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
@@ -53,8 +55,13 @@ import org.hsqldb.lib.java.JavaSystem;
  * Once the maximum data file size allowed for NIO is reached, an ordinary
  * ScaledRAFile is used for data access.
  *
+ * With a non-zero window limit, segments are mapped on first access and at
+ * most window limit segments are mapped at any time. The least recently used
+ * segment is unmapped to make room for a new one. When segments are crossed
+ * in sequence, as in a scan, each segment left behind is unmapped first.
+ *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version  2.3.3
+ * @version  2.4.1
  * @since 1.8.0.5
  */
 final class RAFileNIO implements RandomAccessInterface {
@@ -75,6 +82,14 @@ final class RAFileNIO implements RandomAccessInterface {
     //
     private MappedByteBuffer[] buffers = new MappedByteBuffer[]{};
 
+    // windowed mapping
+    private final int windowLimit;
+    private int       windowCount;
+    private long[]    windowAccess = new long[]{};
+    private long      windowAccessCount;
+    private int       windowIndex;
+    private int       sequentialCount;
+
     //
     private static final String JVM_ERROR = "NIO access failed";
 
@@ -84,11 +99,55 @@ final class RAFileNIO implements RandomAccessInterface {
     static final long largeBufferMask = 0xffffffffffffffffL
                                         << largeBufferScale;
 
+    // segments crossed in sequence before the file is treated as scanned
+    static final int sequentialThreshold = 2;
+
+    //
+    private static final Object unmapTarget;
+    private static final Method unmapMethod;
+
+    static {
+        Object target = null;
+        Method method = null;
+
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field    field       = unsafeClass.getDeclaredField("theUnsafe");
+
+            field.setAccessible(true);
+
+            target = field.get(null);
+            method = unsafeClass.getMethod("invokeCleaner",
+                                           ByteBuffer.class);
+        } catch (Throwable t) {
+
+            // before Java 9 - use the cleaner method of the buffer
+            target = null;
+            method = null;
+        }
+
+        unmapTarget = target;
+        unmapMethod = method;
+    }
+
     RAFileNIO(EventLogInterface logger, String name, boolean readOnly,
               long requiredLength, long maxLength) throws IOException {
+        this(logger, name, readOnly, requiredLength, maxLength, 0);
+    }
 
-        this.logger    = logger;
-        this.maxLength = maxLength;
+    /**
+     * With windowLimit 0 all segments are mapped when the file is enlarged.
+     * Otherwise segments are mapped when accessed and no more than
+     * windowLimit segments are mapped at any time.
+     */
+    RAFileNIO(EventLogInterface logger, String name, boolean readOnly,
+              long requiredLength, long maxLength,
+              int windowLimit) throws IOException {
+
+        this.logger      = logger;
+        this.maxLength   = maxLength;
+        this.windowLimit = windowLimit == 0 ? 0
+                                            : Math.max(windowLimit, 2);
 
         java.io.File tempFile = new java.io.File(name);
 
@@ -111,7 +170,14 @@ final class RAFileNIO implements RandomAccessInterface {
         this.fileDescriptor = file.getFD();
 
         if (ensureLength(requiredLength)) {
-            buffer          = buffers[0];
+            try {
+                buffer = getBuffer(0);
+            } catch (IOException e) {
+                close();
+
+                throw e;
+            }
+
             bufferLength    = buffer.limit();
             bufferPosition  = 0;
             currentPosition = 0;
@@ -387,6 +453,23 @@ final class RAFileNIO implements RandomAccessInterface {
                 file.writeByte(0);
             }
 
+            if (windowLimit > 0) {
+                long newLength = fileLength + newBufferLength;
+                int newCount = (int) ((newLength + largeBufferSize - 1)
+                                      >> largeBufferScale);
+
+                buffers = (MappedByteBuffer[]) ArrayUtil.resizeArray(buffers,
+                        newCount);
+                windowAccess = (long[]) ArrayUtil.resizeArray(windowAccess,
+                        newCount);
+                fileLength = newLength;
+
+                logger.logDetailEvent("NIO buffer windows " + newCount
+                                      + ", file size " + fileLength);
+
+                return true;
+            }
+
             MappedByteBuffer[] newBuffers =
                 new MappedByteBuffer[buffers.length + 1];
             MappedByteBuffer newBuffer = channel.map(mapMode, fileLength,
@@ -436,6 +519,10 @@ final class RAFileNIO implements RandomAccessInterface {
         int     errIndex = 0;
 
         for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] == null) {
+                continue;
+            }
+
             try {
                 buffers[i].force();
             } catch (Throwable t) {
@@ -452,6 +539,10 @@ final class RAFileNIO implements RandomAccessInterface {
 
         if (error) {
             for (int i = errIndex; i < buffers.length; i++) {
+                if (buffers[i] == null) {
+                    continue;
+                }
+
                 try {
                     buffers[i].force();
                 } catch (Throwable t) {
@@ -472,7 +563,7 @@ final class RAFileNIO implements RandomAccessInterface {
         }
     }
 
-    private void positionBufferSeek(long offset) {
+    private void positionBufferSeek(long offset) throws IOException {
 
         if (offset < bufferPosition
                 || offset >= bufferPosition + bufferLength) {
@@ -484,7 +575,7 @@ final class RAFileNIO implements RandomAccessInterface {
         currentPosition = offset;
     }
 
-    private void positionBufferMove(int relOffset) {
+    private void positionBufferMove(int relOffset) throws IOException {
 
         long offset = currentPosition + relOffset;
 
@@ -497,9 +588,9 @@ final class RAFileNIO implements RandomAccessInterface {
         currentPosition = offset;
     }
 
-    private void setCurrentBuffer(long offset) {
+    private void setCurrentBuffer(long offset) throws IOException {
 
-        if(readOnly) {
+        if (readOnly && windowLimit == 0) {
             return;
         }
 
@@ -508,14 +599,16 @@ final class RAFileNIO implements RandomAccessInterface {
         // when moving to last position in file
         if (bufferIndex == buffers.length) {
             bufferIndex    = buffers.length - 1;
+            buffer         = getBuffer(bufferIndex);
             bufferPosition = (long) bufferIndex * largeBufferSize;
-            buffer         = buffers[bufferIndex];
+            bufferLength   = buffer.limit();
 
             return;
         }
 
-        buffer         = buffers[bufferIndex];
+        buffer         = getBuffer(bufferIndex);
         bufferPosition = offset & largeBufferMask;
+        bufferLength   = buffer.limit();
     }
 
     /**
@@ -523,34 +616,145 @@ final class RAFileNIO implements RandomAccessInterface {
      * fixes them.
      *
      */
-    private void checkBuffer() {
+    private void checkBuffer() throws IOException {
 
-        if(readOnly) {
+        if (readOnly && windowLimit == 0) {
             return;
         }
+
         int bufferIndex = (int) (currentPosition >> largeBufferScale);
 
-        if (currentPosition != bufferPosition + buffer.position()) {
-            buffer         = buffers[bufferIndex];
+        if (currentPosition != bufferPosition + buffer.position()
+                || buffer != buffers[bufferIndex]) {
+            buffer         = getBuffer(bufferIndex);
             bufferPosition = currentPosition & largeBufferMask;
+            bufferLength   = buffer.limit();
 
             buffer.position((int) (currentPosition - bufferPosition));
-        } else if (buffer != buffers[bufferIndex]) {
-            buffer = buffers[bufferIndex];
         }
     }
 
+    /**
+     * Returns the segment at the index, mapping it if it is not mapped.
+     * When the window limit is reached, the least recently used segment
+     * other than the current one is unmapped first.
+     */
+    private MappedByteBuffer getBuffer(int index) throws IOException {
+
+        MappedByteBuffer mapped = buffers[index];
+
+        if (windowLimit == 0) {
+            return mapped;
+        }
+
+        if (index == windowIndex + 1) {
+            sequentialCount++;
+
+            // free-behind - the segment left by a scan is unmapped first
+            if (sequentialCount >= sequentialThreshold) {
+                windowAccess[windowIndex] = 0;
+            }
+        } else if (index != windowIndex) {
+            sequentialCount = 0;
+        }
+
+        if (mapped == null) {
+            if (windowCount >= windowLimit) {
+                unmapWindow(getEvictionIndex());
+            }
+
+            long position = (long) index << largeBufferScale;
+            long length   = fileLength - position;
+
+            if (length > largeBufferSize) {
+                length = largeBufferSize;
+            }
+
+            MapMode mapMode = readOnly ? FileChannel.MapMode.READ_ONLY
+                                       : FileChannel.MapMode.READ_WRITE;
+
+            try {
+                mapped = channel.map(mapMode, position, length);
+            } catch (Throwable t) {
+                logger.logWarningEvent("NIO buffer map failed: pos "
+                                       + position + " ", t);
+
+                throw JavaSystem.toIOException(t);
+            }
+
+            buffers[index] = mapped;
+
+            windowCount++;
+        }
+
+        windowAccess[index] = ++windowAccessCount;
+        windowIndex         = index;
+
+        return mapped;
+    }
+
+    /**
+     * Returns the least recently used mapped segment other than the current
+     * one, or -1 if there is none.
+     */
+    private int getEvictionIndex() {
+
+        int  current = buffer == null ? -1
+                                      : (int) (bufferPosition
+                                               >> largeBufferScale);
+        int  index   = -1;
+        long access  = Long.MAX_VALUE;
+
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] == null || i == current) {
+                continue;
+            }
+
+            if (windowAccess[i] < access) {
+                access = windowAccess[i];
+                index  = i;
+            }
+        }
+
+        return index;
+    }
+
+    private void unmapWindow(int index) throws IOException {
+
+        if (index < 0) {
+            return;
+        }
+
+        MappedByteBuffer mapped = buffers[index];
+
+        buffers[index]      = null;
+        windowAccess[index] = 0;
+
+        windowCount--;
+
+        // modified pages of the segment stay in the file cache until synch
+        unmap(mapped);
+    }
+
     /**
      * Non-essential unmap method - see http://bugs.sun.com/view_bug.do?bug_id=4724038
      * reported by joel_turkel at users.sourceforge.net
+     *
+     * Also used to free the direct buffers of RAFileDirect.
      */
-    private void unmap(MappedByteBuffer buffer) throws IOException {
+    static void unmap(ByteBuffer buffer) throws IOException {
 
         if (buffer == null) {
             return;
         }
 
         try {
+            if (unmapMethod != null) {
+                unmapMethod.invoke(unmapTarget, buffer);
+
+                return;
+            }
+
             Method cleanerMethod = buffer.getClass().getMethod("cleaner");
 
             cleanerMethod.setAccessible(true);
@@ -0,0 +1,335 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+
+/**
+ * Data file access with FileChannel positional reads and writes. There is
+ * no shared file pointer in the channel. The pointer used by seek() and the
+ * other sequential methods is a field of this object, which is used under
+ * the lock of DataFileCache as with the other implementations. The
+ * positional read methods can be used by several threads concurrently.<p>
+ *
+ * A FileChannel is closed when a thread blocked in an operation on it is
+ * interrupted. The file is then reopened, and the operation is retried
+ * unless the interrupted thread is the one performing a read. A write is
+ * always completed, as the cache has already released the rows it saves;
+ * the interrupt status is cleared for the retry and restored afterwards.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+final class RAFilePositional implements RandomAccessPositional {
+
+    final EventLogInterface      logger;
+    final String                 fileName;
+    private final boolean        readOnly;
+    private final String         accessMode;
+    private RandomAccessFile     file;
+    private volatile FileChannel channel;
+    private volatile boolean     closed;
+    private final ByteBuffer     valueBuffer = ByteBuffer.allocate(8);
+
+    //
+    long seekPosition;
+
+    RAFilePositional(EventLogInterface logger, String name,
+                     boolean readonly)
+                     throws FileNotFoundException, IOException {
+
+        this.logger   = logger;
+        this.fileName = name;
+        this.readOnly = readonly;
+        accessMode    = readonly ? "r"
+                                 : "rw";
+        file          = new RandomAccessFile(name, accessMode);
+        channel       = file.getChannel();
+    }
+
+    public long length() throws IOException {
+        return getChannel().size();
+    }
+
+    public void seek(long position) throws IOException {
+        seekPosition = position;
+    }
+
+    public long getFilePointer() throws IOException {
+        return seekPosition;
+    }
+
+    public int read() throws IOException {
+
+        if (seekPosition >= length()) {
+            return -1;
+        }
+
+        valueBuffer.clear();
+        valueBuffer.limit(1);
+        readFully(seekPosition, valueBuffer);
+
+        seekPosition++;
+
+        return valueBuffer.get(0) & 0xff;
+    }
+
+    public void read(byte[] b, int offset, int length) throws IOException {
+
+        readFully(seekPosition, ByteBuffer.wrap(b, offset, length));
+
+        seekPosition += length;
+    }
+
+    public void write(byte[] b, int offset, int length) throws IOException {
+
+        writeFully(seekPosition, ByteBuffer.wrap(b, offset, length));
+
+        seekPosition += length;
+    }
+
+    public int readInt() throws IOException {
+
+        valueBuffer.clear();
+        valueBuffer.limit(4);
+        readFully(seekPosition, valueBuffer);
+
+        seekPosition += 4;
+
+        return valueBuffer.getInt(0);
+    }
+
+    public void writeInt(int i) throws IOException {
+
+        valueBuffer.clear();
+        valueBuffer.putInt(i);
+        valueBuffer.flip();
+        writeFully(seekPosition, valueBuffer);
+
+        seekPosition += 4;
+    }
+
+    public long readLong() throws IOException {
+
+        valueBuffer.clear();
+        readFully(seekPosition, valueBuffer);
+
+        seekPosition += 8;
+
+        return valueBuffer.getLong(0);
+    }
+
+    public void writeLong(long i) throws IOException {
+
+        valueBuffer.clear();
+        valueBuffer.putLong(i);
+        valueBuffer.flip();
+        writeFully(seekPosition, valueBuffer);
+
+        seekPosition += 8;
+    }
+
+    public void read(long position, byte[] b, int offset,
+                     int length) throws IOException {
+        readFully(position, ByteBuffer.wrap(b, offset, length));
+    }
+
+    public int readInt(long position) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+
+        readFully(position, buffer);
+
+        return buffer.getInt(0);
+    }
+
+    public void close() throws IOException {
+
+        synchronized (this) {
+            closed = true;
+
+            file.close();
+        }
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void synch() {
+
+        try {
+            getFile().getFD().sync();
+        } catch (Throwable t) {
+            try {
+                getFile().getFD().sync();
+            } catch (Throwable tt) {
+                logger.logSevereEvent("RA file sync error ", tt);
+
+                throw Error.error(t, ErrorCode.FILE_IO_ERROR, null);
+            }
+        }
+    }
+
+    public boolean ensureLength(long newLength) {
+
+        try {
+            if (!readOnly && length() < newLength) {
+                valueBuffer.clear();
+                valueBuffer.limit(1);
+                valueBuffer.put(0, (byte) 0);
+                writeFully(newLength - 1, valueBuffer);
+            }
+        } catch (IOException e) {
+            logger.logWarningEvent("data file enlarge failed ", e);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    public boolean setLength(long newLength) {
+
+        try {
+            getFile().setLength(newLength);
+
+            seekPosition = 0;
+
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    private void readFully(long position,
+                           ByteBuffer buffer) throws IOException {
+
+        while (buffer.hasRemaining()) {
+            FileChannel current = getChannel();
+
+            try {
+                int count = current.read(buffer, position);
+
+                if (count < 0) {
+                    throw new EOFException();
+                }
+
+                position += count;
+            } catch (ClosedByInterruptException e) {
+                reopen(current);
+
+                throw e;
+            } catch (ClosedChannelException e) {
+                reopen(current);
+            }
+        }
+    }
+
+    private void writeFully(long position,
+                            ByteBuffer buffer) throws IOException {
+
+        // file position of the start of the buffer, valid after a failed write
+        long    start       = position - buffer.position();
+        boolean interrupted = false;
+
+        try {
+            while (buffer.hasRemaining()) {
+                FileChannel current = getChannel();
+
+                try {
+                    current.write(buffer, start + buffer.position());
+                } catch (ClosedByInterruptException e) {
+                    reopen(current);
+
+                    // the new channel would be closed again by the flag
+                    interrupted |= Thread.interrupted();
+                } catch (ClosedChannelException e) {
+                    reopen(current);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        return channel;
+    }
+
+    private synchronized RandomAccessFile getFile() throws IOException {
+
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        return file;
+    }
+
+    /**
+     * Reopens the file if the channel that failed is still the current one.
+     */
+    private synchronized void reopen(FileChannel failed) throws IOException {
+
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+
+        if (channel != failed) {
+            return;
+        }
+
+        logger.logWarningEvent("data file reopened after interrupt "
+                               + fileName, null);
+
+        file    = new RandomAccessFile(fileName, accessMode);
+        channel = file.getChannel();
+    }
+}
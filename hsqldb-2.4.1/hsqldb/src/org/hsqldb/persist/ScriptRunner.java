@@ -50,6 +50,7 @@ import org.hsqldb.lib.IntKeyHashMap;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.result.Result;
 import org.hsqldb.scriptio.ScriptReaderBase;
+import org.hsqldb.scriptio.ScriptReaderBinaryLog;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.types.Type;
@@ -72,16 +73,28 @@ public class ScriptRunner {
      */
     public static void runScript(Database database, String logFilename,
                                  boolean fullReplay) {
+        runScript(database, logFilename, fullReplay, 0);
+    }
+
+    /**
+     *  With more than one thread, committed transactions are replayed in
+     *  parallel by ScriptRunnerParallel.
+     */
+    public static void runScript(Database database, String logFilename,
+                                 boolean fullReplay, int threads) {
 
         Crypto           crypto = database.logger.getCrypto();
         ScriptReaderBase scr;
 
         try {
-            if (crypto == null) {
-                scr = new ScriptReaderText(database, logFilename, false);
-            } else {
+            if (crypto != null) {
                 scr = new ScriptReaderDecode(database, logFilename, crypto,
                                              true);
+            } else if (ScriptReaderBinaryLog.isBinaryLog(database,
+                    logFilename)) {
+                scr = new ScriptReaderBinaryLog(database, logFilename);
+            } else {
+                scr = new ScriptReaderText(database, logFilename, false);
             }
         } catch (Throwable e) {
 
@@ -98,11 +111,11 @@ public class ScriptRunner {
             return;
         }
 
-        runScript(database, scr, fullReplay);
+        runScript(database, scr, fullReplay, threads);
     }
 
     private static void runScript(Database database, ScriptReaderBase scr,
-                                  boolean fullReplay) {
+                                  boolean fullReplay, int threads) {
 
         IntKeyHashMap sessionMap = new IntKeyHashMap();
         Session       current    = null;
@@ -119,6 +132,13 @@ public class ScriptRunner {
         dummy.setCompileTimestamp(Long.MAX_VALUE);
         database.setReferentialIntegrity(false);
 
+        ScriptRunnerParallel parallel = null;
+
+        // logs of 1.8 databases have no COMMIT lines
+        if (threads > 1 && !database.getProperties().isVersion18()) {
+            parallel = new ScriptRunnerParallel(database, dummy, threads);
+        }
+
         try {
             while (scr.readLoggedStatement(current)) {
                 int sessionId = scr.getSessionNumber();
@@ -139,91 +159,42 @@ public class ScriptRunner {
                     }
                 }
 
-                Result result = null;
-
                 statementType = scr.getStatementType();
 
                 switch (statementType) {
 
                     case ScriptReaderBase.SET_FILES_CHECK_STATEMENT :
-                        result = null;
                     case ScriptReaderBase.ANY_STATEMENT :
-                        statement = scr.getLoggedStatement();
-
-                        Statement cs;
-
-                        try {
-                            cs = current.compileStatement(statement);
-
-                            if (database.getProperties().isVersion18()) {
-
-                                // convert BIT columns in .log to BOOLEAN
-                                if (cs.getType()
-                                        == StatementTypes.CREATE_TABLE) {
-                                    Table table =
-                                        (Table) ((StatementSchema) cs)
-                                            .getArguments()[0];
-
-                                    for (int i = 0; i < table.getColumnCount();
-                                            i++) {
-                                        ColumnSchema column =
-                                            table.getColumn(i);
-
-                                        if (column.getDataType().isBitType()) {
-                                            column.setType(Type.SQL_BOOLEAN);
-                                        }
-                                    }
-                                }
-                            }
-
-                            result = current.executeCompiledStatement(cs,
-                                    ValuePool.emptyObjectArray, 0);
-                        } catch (Throwable e) {
-                            result = Result.newErrorResult(e);
+                        if (parallel != null) {
+                            parallel.barrier();
                         }
 
-                        if (result != null && result.isError()) {
-                            if (result.getException() != null) {
-                                throw result.getException();
-                            }
+                        statement = scr.getLoggedStatement();
 
-                            throw Error.error(result);
-                        }
+                        executeStatement(database, current, statement);
                         break;
 
                     case ScriptReaderBase.COMMIT_STATEMENT :
-                        current.commit(false);
+                        if (parallel == null || !parallel.commit(current)) {
+                            current.commit(false);
+                        }
                         break;
 
-                    case ScriptReaderBase.INSERT_STATEMENT : {
-                        current.sessionContext.currentStatement = dummy;
-
-                        current.beginAction(dummy);
-
-                        Object[] data = scr.getData();
-
-                        scr.getCurrentTable().insertNoCheckFromLog(current,
-                                data);
-                        current.endAction(Result.updateOneResult);
-
-                        break;
-                    }
+                    case ScriptReaderBase.INSERT_STATEMENT :
                     case ScriptReaderBase.DELETE_STATEMENT : {
-                        current.sessionContext.currentStatement = dummy;
-
-                        current.beginAction(dummy);
-
-                        Table           table = scr.getCurrentTable();
-                        PersistentStore store = table.getRowStore(current);
-                        Object[]        data  = scr.getData();
-                        Row row = table.getDeleteRowFromLog(current, data);
-
-                        if (row != null) {
-                            current.addDeleteAction(table, store, row, null);
+                        boolean isInsert = statementType
+                                           == ScriptReaderBase
+                                               .INSERT_STATEMENT;
+                        Table    table = scr.getCurrentTable();
+                        Object[] data  = scr.getData();
+
+                        if (parallel == null
+                                || !parallel.addAction(current, isInsert,
+                                                       table, data)) {
+                            applyAction(current, dummy, isInsert, table,
+                                        data);
                         }
 
-                        current.endAction(Result.updateOneResult);
-
                         break;
                     }
                     case ScriptReaderBase.SET_SCHEMA_STATEMENT : {
@@ -248,6 +219,10 @@ public class ScriptRunner {
                     sessionMap.remove(currentId);
                 }
             }
+
+            if (parallel != null) {
+                parallel.finish();
+            }
         } catch (HsqlException e) {
             if (e.getErrorCode() == -ErrorCode.ERROR_IN_LOG_FILE) {
                 throw e;
@@ -290,6 +265,10 @@ public class ScriptRunner {
                 throw e;
             }
         } finally {
+            if (parallel != null) {
+                parallel.close();
+            }
+
             if (scr != null) {
                 scr.close();
             }
@@ -298,4 +277,69 @@ public class ScriptRunner {
             database.setReferentialIntegrity(true);
         }
     }
+
+    private static void executeStatement(Database database, Session current,
+                                         String statement) {
+
+        Statement cs;
+        Result    result;
+
+        try {
+            cs = current.compileStatement(statement);
+
+            if (database.getProperties().isVersion18()) {
+
+                // convert BIT columns in .log to BOOLEAN
+                if (cs.getType() == StatementTypes.CREATE_TABLE) {
+                    Table table =
+                        (Table) ((StatementSchema) cs).getArguments()[0];
+
+                    for (int i = 0; i < table.getColumnCount(); i++) {
+                        ColumnSchema column = table.getColumn(i);
+
+                        if (column.getDataType().isBitType()) {
+                            column.setType(Type.SQL_BOOLEAN);
+                        }
+                    }
+                }
+            }
+
+            result = current.executeCompiledStatement(cs,
+                    ValuePool.emptyObjectArray, 0);
+        } catch (Throwable e) {
+            result = Result.newErrorResult(e);
+        }
+
+        if (result != null && result.isError()) {
+            if (result.getException() != null) {
+                throw result.getException();
+            }
+
+            throw Error.error(result);
+        }
+    }
+
+    /**
+     *  Applies a logged insert or delete in the session.
+     */
+    static void applyAction(Session current, Statement dummy,
+                            boolean isInsert, Table table, Object[] data) {
+
+        current.sessionContext.currentStatement = dummy;
+
+        current.beginAction(dummy);
+
+        if (isInsert) {
+            table.insertNoCheckFromLog(current, data);
+        } else {
+            PersistentStore store = table.getRowStore(current);
+            Row             row   = table.getDeleteRowFromLog(current, data);
+
+            if (row != null) {
+                current.addDeleteAction(table, store, row, null);
+            }
+        }
+
+        current.endAction(Result.updateOneResult);
+    }
 }
@@ -0,0 +1,464 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hsqldb.Database;
+import org.hsqldb.Session;
+import org.hsqldb.Statement;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.LongKeyHashMap;
+import org.hsqldb.lib.OrderedHashSet;
+import org.hsqldb.types.CharacterType;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Parallel replay of the row changes in a .log file, used by ScriptRunner
+ * when the hsqldb.replay_threads property is larger than 1. <p>
+ *
+ * Inserts and deletes are collected per log session until the session
+ * commits. Each committed transaction is then applied and committed by a
+ * worker thread in a session of its own. A transaction waits for the
+ * last earlier transaction that touched any of the same keys. A key is the
+ * table plus a hash of the primary key, or the whole table when the table
+ * has no primary key, its key columns cannot be hashed consistently with
+ * comparison, or it has a unique index other than the primary key. Deletes
+ * are logged with the primary key values only, so a conflict on another
+ * unique index cannot be detected from the row data. Conflicting rows are
+ * therefore changed in commit order, while transactions on different keys
+ * run concurrently. <p>
+ *
+ * Any other logged statement is a barrier: all transactions dispatched so
+ * far are completed, the uncommitted changes of all log sessions are applied
+ * in their own sessions, and those sessions continue serially until their
+ * next commit.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+final class ScriptRunnerParallel {
+
+    /** key hash partitions per table, a power of 2 */
+    static final int PARTITIONS = 4096;
+
+    /** transactions dispatched but not yet completed, per thread */
+    static final int TASKS_PER_THREAD = 256;
+
+    //
+    final Database                    database;
+    final Statement                   dummy;
+    final int                         maxTasks;
+    final Semaphore                   taskPermits;
+    final ArrayBlockingQueue<Session> workerSessions;
+    final ThreadPoolExecutor          executor;
+    final HashMap                     pendingActions = new HashMap();
+    final OrderedHashSet              serialSessions = new OrderedHashSet();
+    final LongKeyHashMap              lastTasks      = new LongKeyHashMap();
+    final HashMap                     tableKeys      = new HashMap();
+    volatile Throwable                failure;
+
+    ScriptRunnerParallel(Database database, Statement dummy, int threads) {
+
+        this.database  = database;
+        this.dummy     = dummy;
+        maxTasks       = threads * TASKS_PER_THREAD;
+        taskPermits    = new Semaphore(maxTasks);
+        workerSessions = new ArrayBlockingQueue<Session>(threads);
+
+        for (int i = 0; i < threads; i++) {
+            workerSessions.add(
+                database.getSessionManager().newSessionForLog(database));
+        }
+
+        executor = new ThreadPoolExecutor(threads, threads, 0,
+                                          TimeUnit.MILLISECONDS,
+                                          new LinkedBlockingQueue<Runnable>(),
+                                          new ThreadFactory() {
+
+            int count;
+
+            public Thread newThread(Runnable r) {
+
+                Thread thread = new Thread(r,
+                                           "HSQLDB Log Replay " + (++count));
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Records a row change of a log session. Returns false if the change
+     * must be applied directly in the session.
+     */
+    boolean addAction(Session session, boolean isInsert, Table table,
+                      Object[] data) {
+
+        if (serialSessions.contains(session)) {
+            drain();
+
+            return false;
+        }
+
+        HsqlArrayList list = (HsqlArrayList) pendingActions.get(session);
+
+        if (list == null) {
+            list = new HsqlArrayList();
+
+            pendingActions.put(session, list);
+        }
+
+        list.add(new ReplayAction(isInsert, table, data));
+
+        return true;
+    }
+
+    /**
+     * Dispatches the transaction of a log session to the workers. Returns
+     * false if the session must be committed directly.
+     */
+    boolean commit(Session session) {
+
+        checkFailure();
+
+        if (serialSessions.contains(session)) {
+            serialSessions.remove(session);
+            drain();
+
+            return false;
+        }
+
+        HsqlArrayList list = (HsqlArrayList) pendingActions.remove(session);
+
+        if (list == null) {
+            return true;
+        }
+
+        ReplayTask task = new ReplayTask(list);
+
+        for (int i = 0; i < list.size(); i++) {
+            ReplayAction action = (ReplayAction) list.get(i);
+            long         key    = getKey(action.isInsert, action.table,
+                                         action.data);
+            ReplayTask   last   = (ReplayTask) lastTasks.put(key, task);
+
+            if (last != null && last != task) {
+                task.predecessors.add(last);
+            }
+        }
+
+        taskPermits.acquireUninterruptibly();
+        executor.execute(task);
+
+        return true;
+    }
+
+    /**
+     * Completes all dispatched transactions and applies the uncommitted
+     * changes of the log sessions, before a statement is executed.
+     */
+    void barrier() {
+
+        drain();
+        lastTasks.clear();
+
+        Iterator it = pendingActions.keySet().iterator();
+
+        while (it.hasNext()) {
+            Session       session = (Session) it.next();
+            HsqlArrayList list    = (HsqlArrayList) pendingActions.get(session);
+
+            for (int i = 0; i < list.size(); i++) {
+                ReplayAction action = (ReplayAction) list.get(i);
+
+                ScriptRunner.applyAction(session, dummy, action.isInsert,
+                                         action.table, action.data);
+            }
+
+            serialSessions.add(session);
+        }
+
+        pendingActions.clear();
+    }
+
+    /**
+     * Waits for all dispatched transactions at the end of the log.
+     */
+    void finish() {
+        drain();
+    }
+
+    void close() {
+
+        executor.shutdown();
+
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {}
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+
+        taskPermits.acquireUninterruptibly(maxTasks);
+        taskPermits.release(maxTasks);
+        checkFailure();
+    }
+
+    private void checkFailure() {
+
+        Throwable t = failure;
+
+        if (t == null) {
+            return;
+        }
+
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+
+        if (t instanceof java.lang.Error) {
+            throw (java.lang.Error) t;
+        }
+
+        throw Error.error(t, ErrorCode.GENERAL_ERROR, t.toString());
+    }
+
+    private long getKey(boolean isInsert, Table table, Object[] data) {
+
+        TableKey tableKey = (TableKey) tableKeys.get(table);
+
+        if (tableKey == null) {
+            tableKey = new TableKey(table, tableKeys.size() + 1);
+
+            tableKeys.put(table, tableKey);
+        }
+
+        int hash = 0;
+
+        if (tableKey.keyColumns != null) {
+            int[]  cols  = tableKey.keyColumns;
+            Type[] types = table.getColumnTypes();
+
+            // delete data holds only the primary key, in key order
+            for (int i = 0; i < cols.length; i++) {
+                Object value = isInsert ? data[cols[i]]
+                                        : data[i];
+
+                hash = 31 * hash + hashValue(types[cols[i]], value);
+            }
+
+            hash = (hash ^ (hash >>> 16)) & (PARTITIONS - 1);
+        }
+
+        return ((long) tableKey.number << 32) | hash;
+    }
+
+    private static int hashValue(Type type, Object value) {
+
+        if (value == null) {
+            return 0;
+        }
+
+        if (type.isCharacterType()) {
+            String s   = (String) value;
+            int    end = s.length();
+
+            // trailing spaces are ignored by the default PAD SPACE collation
+            while (end > 0 && s.charAt(end - 1) == ' ') {
+                end--;
+            }
+
+            return s.substring(0, end).hashCode();
+        }
+
+        return value.hashCode();
+    }
+
+    /**
+     * Types with values that are equal in comparison only if they are
+     * equal in Object.equals().
+     */
+    private static boolean isHashable(Type type) {
+
+        if (type.isCharacterType()) {
+            return ((CharacterType) type).getCollation().isDefaultCollation();
+        }
+
+        if (type.isIntegralType() || type.isBooleanType()) {
+            return true;
+        }
+
+        switch (type.typeCode) {
+
+            case Types.SQL_DECIMAL :
+            case Types.SQL_NUMERIC :
+            case Types.SQL_DATE :
+            case Types.SQL_TIMESTAMP :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
+    private static class TableKey {
+
+        final int   number;
+        final int[] keyColumns;
+
+        TableKey(Table table, int number) {
+
+            int[] cols = table.getPrimaryKey();
+
+            if (hasOtherUniqueIndex(table)) {
+                cols = null;
+            } else if (cols != null && cols.length > 0) {
+                Type[] types = table.getColumnTypes();
+
+                for (int i = 0; i < cols.length; i++) {
+                    if (!isHashable(types[cols[i]])) {
+                        cols = null;
+
+                        break;
+                    }
+                }
+            } else {
+                cols = null;
+            }
+
+            this.number     = number;
+            this.keyColumns = cols;
+        }
+
+        private static boolean hasOtherUniqueIndex(Table table) {
+
+            Index[] indexes = table.getIndexList();
+
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] != table.getPrimaryIndex()
+                        && indexes[i].isUnique()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static class ReplayAction {
+
+        final boolean  isInsert;
+        final Table    table;
+        final Object[] data;
+
+        ReplayAction(boolean isInsert, Table table, Object[] data) {
+            this.isInsert = isInsert;
+            this.table    = table;
+            this.data     = data;
+        }
+    }
+
+    private class ReplayTask implements Runnable {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        OrderedHashSet       predecessors = new OrderedHashSet();
+        HsqlArrayList        actions;
+
+        ReplayTask(HsqlArrayList actions) {
+            this.actions = actions;
+        }
+
+        public void run() {
+
+            Session session = null;
+
+            try {
+                for (int i = 0; i < predecessors.size(); i++) {
+                    ((ReplayTask) predecessors.get(i)).done.await();
+                }
+
+                if (failure != null) {
+                    return;
+                }
+
+                session = workerSessions.take();
+
+                for (int i = 0; i < actions.size(); i++) {
+                    ReplayAction action = (ReplayAction) actions.get(i);
+
+                    ScriptRunner.applyAction(session, dummy, action.isInsert,
+                                             action.table, action.data);
+                }
+
+                session.commit(false);
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+
+                if (session != null) {
+                    session.rollback(false);
+                }
+            } finally {
+                if (session != null) {
+                    workerSessions.add(session);
+                }
+
+                // completed tasks must not keep earlier tasks reachable
+                predecessors = null;
+                actions      = null;
+
+                done.countDown();
+                taskPermits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+import org.hsqldb.Database;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.IntKeyHashMap;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * Reads the binary redo log written by ScriptWriterBinaryLog. <p>
+ *
+ * Rows are decoded directly from the RowInputBinary encoding, no SQL is
+ * parsed apart from statements logged as SQL strings. Reading stops at the
+ * first incomplete record or the first record with a bad checksum, which is
+ * the normal end of a log that was being written when the database stopped.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+public class ScriptReaderBinaryLog extends ScriptReaderBase {
+
+    DataInputStream dataStreamIn;
+    RowInputBinary  rowIn;
+    CRC32           checksum;
+    IntKeyHashMap   tables;
+    long            remaining;
+
+    public ScriptReaderBinaryLog(Database db,
+                                 String fileName) throws IOException {
+
+        super(db, fileName);
+
+        InputStream inputStream =
+            database.logger.getFileAccess().openInputStreamElement(fileName);
+
+        dataStreamIn = new DataInputStream(
+            new BufferedInputStream(inputStream, 1 << 16));
+        rowIn    = new RowInputBinary(256);
+        checksum = new CRC32();
+        tables   = new IntKeyHashMap();
+
+        if (!readHeader(dataStreamIn)) {
+            close();
+
+            throw Error.error(ErrorCode.ERROR_IN_LOG_FILE, fileName);
+        }
+
+        File file = new File(fileName);
+
+        // bytes left for records, unknown for a custom FileAccess
+        remaining = file.isFile()
+                    ? file.length()
+                      - ScriptWriterBinaryLog.BINARY_LOG_HEADER.length
+                    : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if the file starts with the binary log header.
+     */
+    public static boolean isBinaryLog(Database db, String fileName) {
+
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(
+                db.logger.getFileAccess().openInputStreamElement(fileName));
+
+            return readHeader(in);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {}
+        }
+    }
+
+    private static boolean readHeader(DataInputStream in) throws IOException {
+
+        byte[] header = new byte[ScriptWriterBinaryLog.BINARY_LOG_HEADER.length];
+
+        try {
+            in.readFully(header);
+        } catch (EOFException e) {
+            return false;
+        }
+
+        for (int i = 0; i < header.length; i++) {
+            if (header[i] != ScriptWriterBinaryLog.BINARY_LOG_HEADER[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    protected void readDDL(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    protected void readExistingData(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    public boolean readLoggedStatement(Session session) {
+
+        while (true) {
+            if (!readRecord()) {
+                return false;
+            }
+
+            int type = rowIn.readByte();
+
+            sessionNumber = (int) rowIn.readLong();
+            rowData       = null;
+            currentTable  = null;
+            statement     = null;
+
+            switch (type) {
+
+                case ScriptWriterBinaryLog.TABLE_ID : {
+                    int    id     = rowIn.readInt();
+                    String schema = rowIn.readString();
+                    String name   = rowIn.readString();
+
+                    tables.put(id,
+                               database.schemaManager.getUserTable(name,
+                                   schema));
+
+                    continue;
+                }
+                case ANY_STATEMENT :
+                    statement = rowIn.readString();
+                    break;
+
+                case SET_SCHEMA_STATEMENT :
+                    currentSchema = rowIn.readString();
+                    break;
+
+                case COMMIT_STATEMENT :
+                    break;
+
+                case INSERT_STATEMENT :
+                case DELETE_STATEMENT : {
+                    currentTable = (Table) tables.get(rowIn.readInt());
+
+                    if (currentTable == null) {
+                        throw Error.error(ErrorCode.ERROR_IN_LOG_FILE,
+                                          fileNamePath);
+                    }
+
+                    currentStore = database.persistentStoreCollection.getStore(
+                        currentTable);
+
+                    Type[] colTypes;
+
+                    if (type == DELETE_STATEMENT
+                            && currentTable.hasPrimaryKey()) {
+                        colTypes = currentTable.getPrimaryKeyTypes();
+                    } else {
+                        colTypes = currentTable.getColumnTypes();
+                    }
+
+                    rowData = rowIn.readData(colTypes);
+
+                    break;
+                }
+                default :
+                    throw Error.error(ErrorCode.ERROR_IN_LOG_FILE,
+                                      fileNamePath);
+            }
+
+            statementType = type;
+
+            return true;
+        }
+    }
+
+    /**
+     * Reads the next record into rowIn. Returns false at the end of the log.
+     */
+    private boolean readRecord() {
+
+        int length;
+        int crc;
+
+        try {
+            length = dataStreamIn.readInt();
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileNamePath);
+        }
+
+        try {
+            crc = dataStreamIn.readInt();
+
+            remaining -= ScriptWriterBinaryLog.RECORD_HEADER_SIZE;
+
+            // a torn or corrupt length is not allocated
+            if (length < ScriptWriterBinaryLog.RECORD_MIN_SIZE
+                    || length > remaining) {
+                database.logger.logInfoEvent("binary log bad record length "
+                                             + length + " after record "
+                                             + lineCount);
+
+                return false;
+            }
+
+            remaining -= length;
+
+            rowIn.resetBlock(0, length);
+            dataStreamIn.readFully(rowIn.getBuffer(), 0, length);
+        } catch (EOFException e) {
+            database.logger.logInfoEvent("binary log incomplete record after "
+                                         + lineCount);
+
+            return false;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileNamePath);
+        }
+
+        checksum.reset();
+        checksum.update(rowIn.getBuffer(), 0, length);
+
+        if ((int) checksum.getValue() != crc) {
+            database.logger.logInfoEvent("binary log checksum mismatch after "
+                                         + lineCount);
+
+            return false;
+        }
+
+        lineCount++;
+
+        return true;
+    }
+
+    public void close() {
+
+        try {
+            if (dataStreamIn != null) {
+                dataStreamIn.close();
+            }
+        } catch (Exception e) {}
+    }
+}
@@ -430,6 +430,8 @@ public abstract class ScriptWriterBase implements Runnable {
         if (writeDelay > 0) {
             timerTask = DatabaseManager.getTimer().schedulePeriodicallyAfter(0,
                     writeDelay, this, false);
+        } else if (writeDelay == 0) {
+            startGroupCommit();
         }
     }
 
@@ -440,6 +442,188 @@ public abstract class ScriptWriterBase implements Runnable {
 
             timerTask = null;
         }
+
+        stopGroupCommit();
+    }
+
+    // group commit - used when writeDelay is 0
+    private final Object    syncMonitor = new Object();
+    private volatile Thread syncThread;
+    private boolean         syncStopped;
+    private long            syncRequested;
+    private long            syncDone;
+
+    /**
+     * Returns true when commit records are synced by the group commit
+     * thread. The committing session then calls waitForSync() with the
+     * position of its record after releasing the transaction lock.
+     */
+    public boolean isGroupCommit() {
+        return syncThread != null;
+    }
+
+    /**
+     * Called after a commit record has been written. With a write delay of
+     * 0 the record is synced by the group commit thread after the session
+     * has released the transaction lock, or here if there is no such thread.
+     */
+    void syncCommitStatement(Session session) {
+
+        if (writeDelay == 0) {
+            if (isGroupCommit()) {
+                session.logSyncWriter   = this;
+                session.logSyncPosition = byteCount;
+            } else {
+                sync();
+            }
+        }
+    }
+
+    /**
+     * Waits until the log has been synced to at least the given byte
+     * position. Concurrent callers are served by a single flush and
+     * FileDescriptor.sync() on the group commit thread.
+     */
+    public void waitForSync(long position) {
+
+        boolean interrupted = false;
+
+        synchronized (syncMonitor) {
+            if (position > syncRequested) {
+                syncRequested = position;
+
+                syncMonitor.notifyAll();
+            }
+
+            while (syncDone < position && syncThread != null) {
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (syncDone >= position) {
+                position = 0;
+            }
+        }
+
+        // group commit was stopped before the record was synced
+        if (position > 0) {
+            syncStream();
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startGroupCommit() {
+
+        synchronized (syncMonitor) {
+            if (syncThread != null) {
+                return;
+            }
+
+            syncStopped   = false;
+            syncRequested = 0;
+            syncDone      = 0;
+            syncThread    = new Thread(new GroupCommitTask(),
+                                    "HSQLDB Group Commit " + outFile);
+
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+    }
+
+    private void stopGroupCommit() {
+
+        Thread thread;
+
+        synchronized (syncMonitor) {
+            thread = syncThread;
+
+            if (thread == null) {
+                return;
+            }
+
+            syncStopped = true;
+
+            syncMonitor.notifyAll();
+        }
+
+        if (thread == Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes and syncs the stream, returning the byte position that is now
+     * durable.
+     */
+    private long syncStream() {
+
+        long position;
+
+        synchronized (fileStreamOut) {
+            if (isClosed) {
+                return Long.MAX_VALUE;
+            }
+
+            position = byteCount;
+
+            forceSync();
+        }
+
+        return position;
+    }
+
+    private class GroupCommitTask implements Runnable {
+
+        public void run() {
+
+            while (true) {
+                boolean stopped;
+                boolean pending;
+
+                synchronized (syncMonitor) {
+                    while (!syncStopped && syncRequested <= syncDone) {
+                        try {
+                            syncMonitor.wait();
+                        } catch (InterruptedException e) {}
+                    }
+
+                    stopped = syncStopped;
+                    pending = syncRequested > syncDone;
+                }
+
+                // one sync for all records written so far
+                long position = pending ? syncStream()
+                                        : 0;
+
+                synchronized (syncMonitor) {
+                    if (position > syncDone) {
+                        syncDone = position;
+                    }
+
+                    if (stopped) {
+                        syncThread = null;
+                    }
+
+                    syncMonitor.notifyAll();
+                }
+
+                if (stopped) {
+                    return;
+                }
+            }
+        }
     }
 
     public int getWriteDelay() {
@@ -0,0 +1,256 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.scriptio;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import org.hsqldb.Database;
+import org.hsqldb.NumberSequence;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.map.ValuePool;
+import org.hsqldb.rowio.RowOutputBinary;
+
+/**
+ * Writes the redo log in a binary format, used instead of the SQL text log
+ * when the hsqldb.log_format property is 1. <p>
+ *
+ * The file starts with a fixed header, followed by length-prefixed records.
+ * Each record consists of the payload length, the CRC32 of the payload and
+ * the payload itself: record type, session id and the type specific part.
+ * Inserted and deleted rows are written in the RowOutputBinary encoding
+ * against a table id. The id is defined by a table record written the first
+ * time a table is referenced in this file. Other statements are written as
+ * SQL strings.<p>
+ *
+ * The log file is always new when this writer is opened.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+public class ScriptWriterBinaryLog extends ScriptWriterBase {
+
+    public static final byte[] BINARY_LOG_HEADER = new byte[] {
+        'H', 'S', 'Q', 'L', 'B', 'L', 'O', 'G'
+    };
+
+    /** record type for table id definitions, not returned by the reader */
+    static final int TABLE_ID = 16;
+
+    /** length and checksum */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    /** type and session id */
+    static final int RECORD_MIN_SIZE = 9;
+    RowOutputBinary  rowOut;
+    CRC32            checksum;
+    HashMap          tableIds;
+
+    public ScriptWriterBinaryLog(Database db, String file) {
+
+        super(db, file, false, false, false);
+
+        checksum = new CRC32();
+        tableIds = new HashMap();
+
+        try {
+            rowOut.reset();
+            rowOut.write(BINARY_LOG_HEADER);
+            writeRowOutToFile();
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR,
+                              ErrorCode.M_Message_Pair, new Object[] {
+                e.toString(), outFile
+            });
+        }
+    }
+
+    protected void initBuffers() {
+        rowOut = new RowOutputBinary(256, 1);
+    }
+
+    protected void writeDataTerm() throws IOException {}
+
+    protected void writeSessionIdAndSchema(Session session)
+    throws IOException {
+
+        if (session == null) {
+            return;
+        }
+
+        if (schemaToLog != session.loggedSchema) {
+            startRecord(session, ScriptReaderBase.SET_SCHEMA_STATEMENT);
+            rowOut.writeString(schemaToLog.name);
+            endRecord();
+
+            session.loggedSchema = schemaToLog;
+        }
+    }
+
+    public void writeLogStatement(Session session,
+                                  String s) throws IOException {
+
+        if (session != null) {
+            schemaToLog = session.currentSchema;
+
+            writeSessionIdAndSchema(session);
+        }
+
+        startRecord(session, ScriptReaderBase.ANY_STATEMENT);
+        rowOut.writeString(s);
+        endRecord();
+
+        needsSync = true;
+    }
+
+    public void writeRow(Session session, Row row,
+                         Table table) throws IOException {
+
+        int id = getTableId(session, table);
+
+        startRecord(session, ScriptReaderBase.INSERT_STATEMENT);
+        rowOut.writeInt(id);
+        rowOut.writeData(row, table.getColumnTypes());
+        endRecord();
+    }
+
+    public void writeOtherStatement(Session session,
+                                    String s) throws IOException {
+
+        writeLogStatement(session, s);
+
+        if (writeDelay == 0) {
+            sync();
+        }
+    }
+
+    public void writeInsertStatement(Session session, Row row,
+                                     Table table) throws IOException {
+        writeRow(session, row, table);
+    }
+
+    public void writeDeleteStatement(Session session, Table table,
+                                     Object[] data) throws IOException {
+
+        int id = getTableId(session, table);
+
+        startRecord(session, ScriptReaderBase.DELETE_STATEMENT);
+        rowOut.writeInt(id);
+
+        // as in the text log, only the primary key of a table that has one
+        rowOut.writeData(table.getColumnCount(), table.getColumnTypes(),
+                         data, null, table.getPrimaryKey());
+        endRecord();
+    }
+
+    public void writeSequenceStatement(Session session,
+                                       NumberSequence seq) throws IOException {
+
+        StringBuffer sb = new StringBuffer(64);
+
+        sb.append("ALTER SEQUENCE ");
+        sb.append(seq.getSchemaName().statementName).append('.');
+        sb.append(seq.getName().statementName);
+        sb.append(" RESTART WITH ").append(seq.peek());
+        writeLogStatement(session, sb.toString());
+    }
+
+    public void writeCommitStatement(Session session) throws IOException {
+
+        startRecord(session, ScriptReaderBase.COMMIT_STATEMENT);
+        endRecord();
+
+        needsSync = true;
+
+        syncCommitStatement(session);
+    }
+
+    private int getTableId(Session session, Table table) throws IOException {
+
+        Integer id = (Integer) tableIds.get(table);
+
+        if (id == null) {
+            id = ValuePool.getInt(tableIds.size() + 1);
+
+            startRecord(session, TABLE_ID);
+            rowOut.writeInt(id.intValue());
+            rowOut.writeString(table.getName().schema.name);
+            rowOut.writeString(table.getName().name);
+            endRecord();
+            tableIds.put(table, id);
+        }
+
+        return id.intValue();
+    }
+
+    private void startRecord(Session session, int type) {
+
+        rowOut.reset();
+        rowOut.writeInt(0);
+        rowOut.writeInt(0);
+        rowOut.writeByte(type);
+        rowOut.writeLong(session == null ? 0
+                                         : session.getId());
+    }
+
+    private void endRecord() throws IOException {
+
+        int length = rowOut.size() - RECORD_HEADER_SIZE;
+
+        checksum.reset();
+        checksum.update(rowOut.getBuffer(), RECORD_HEADER_SIZE, length);
+        rowOut.writeIntData(length, 0);
+        rowOut.writeIntData((int) checksum.getValue(), 4);
+        writeRowOutToFile();
+    }
+
+    void writeRowOutToFile() throws IOException {
+
+        if (fileStreamOut == null) {
+            return;
+        }
+
+        synchronized (fileStreamOut) {
+            fileStreamOut.write(rowOut.getBuffer(), 0, rowOut.size());
+
+            byteCount += rowOut.size();
+
+            lineCount++;
+        }
+    }
+}
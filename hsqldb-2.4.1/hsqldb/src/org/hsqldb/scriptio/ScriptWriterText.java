@@ -300,9 +300,7 @@ public class ScriptWriterText extends ScriptWriterBase {
 
         needsSync = true;
 
-        if (writeDelay == 0) {
-            sync();
-        }
+        syncCommitStatement(session);
     }
 
     protected void finishStream() throws IOException {
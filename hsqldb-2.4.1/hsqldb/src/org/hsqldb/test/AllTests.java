@@ -73,6 +73,8 @@ public class AllTests extends TestCase {
         suite.addTestSuite(org.hsqldb.test.TestSubselect.class);
         suite.addTestSuite(org.hsqldb.test.TestCascade.class);
         suite.addTestSuite(org.hsqldb.test.TestGroupByHaving.class);
+        suite.addTestSuite(org.hsqldb.test.TestLogReplay.class);
+        suite.addTestSuite(org.hsqldb.test.TestCacheOptions.class);
         suite.addTestSuite(org.hsqldb.test.TestSqlPersistent.class);     // Sometimes hangs on Connection.close after SHUTDOWN problem
 
         return suite;
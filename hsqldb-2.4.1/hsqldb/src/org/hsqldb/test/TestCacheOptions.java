@@ -0,0 +1,733 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.hsqldb.Session;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.hsqldb.map.BaseHashMap;
+import org.hsqldb.persist.DataFileCache;
+import org.hsqldb.persist.EventLogInterface;
+import org.hsqldb.persist.RandomAccessInterface;
+
+import junit.framework.TestCase;
+
+/**
+ * Cache and data file options of CACHED tables. Each option is run with a
+ * row cache much smaller than the table, so rows are evicted, saved and
+ * read back. The database is closed with SHUTDOWN IMMEDIATELY, reopened
+ * from the .log file, then defragmented.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+public class TestCacheOptions extends TestCase {
+
+    static final int ROWS = 4000;
+
+    File   baseDir;
+    String path;
+
+    public TestCacheOptions(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+
+        baseDir = new File(System.getProperty("java.io.tmpdir"),
+                           "TestCacheOptions-" + getName());
+
+        TestLogReplay.deleteAll(baseDir);
+
+        path = new File(baseDir, "db").getAbsolutePath();
+    }
+
+    protected void tearDown() {
+        TestLogReplay.deleteAll(baseDir);
+    }
+
+    public void testCacheStripes() throws Exception {
+        checkCrashAndDefrag(";hsqldb.cache_stripes=4");
+    }
+
+    /**
+     * Readers look up rows through the striped index while a writer updates
+     * other rows, so rows are evicted and saved during the lookups.
+     */
+    public void testCacheStripesConcurrentReads() throws Exception {
+        checkConcurrentReads(";hsqldb.cache_stripes=4", null);
+    }
+
+    public void testCachePolicy() throws Exception {
+        checkCrashAndDefrag(";hsqldb.cache_policy=1");
+    }
+
+    /**
+     * Rescaling the access counts keeps objects on probation.
+     */
+    public void testCachePolicyResetKeepsProbation() throws Exception {
+
+        Connection c = getConnection(";hsqldb.cache_policy=1");
+
+        try {
+            writeRows(c);
+
+            Object cache     = getCache(c);
+            int    probation = countProbation(cache);
+
+            assertTrue(probation > 0);
+            setField(cache, "accessCount", BaseHashMap.ACCESS_MAX + 1);
+
+            Method reset = BaseHashMap.class.getDeclaredMethod(
+                "resetAccessCount");
+
+            reset.setAccessible(true);
+            reset.invoke(cache);
+            assertEquals(probation, countProbation(cache));
+            c.createStatement().execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Modified rows on probation are not evicted first, which would need a
+     * synchronous save for each cleanup, so the policy saves fewer rows
+     * synchronously than the default one for random updates.
+     */
+    public void testCachePolicySyncSaves() throws Exception {
+
+        long saves = updateRandomRows("");
+
+        TestLogReplay.deleteAll(baseDir);
+        // 322 against 590 when this was written
+        assertTrue(updateRandomRows(";hsqldb.cache_policy=1") * 4
+                   < saves * 3);
+    }
+
+    public void testCacheWriteBack() throws Exception {
+        checkCrashAndDefrag(";hsqldb.cache_write_back=50");
+    }
+
+    /**
+     * With the mark at half the cache, modified rows are saved by the
+     * write-back thread before the cache is full.
+     */
+    public void testCacheWriteBackSavesRows() throws Exception {
+
+        Connection c = getConnection(";hsqldb.cache_write_back=50");
+
+        try {
+            writeRows(c);
+
+            Object cache = getCache(c);
+
+            assertTrue(((Long) invoke(cache,
+                                      "getWriteBackCount")).longValue() > 0);
+            checkRows(c);
+            c.createStatement().execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    public void testPreadDataFile() throws Exception {
+        checkCrashAndDefrag(";hsqldb.pread_data_file=true");
+    }
+
+    /**
+     * Readers share the positional data file while a writer updates rows.
+     */
+    public void testPreadDataFileConcurrentReads() throws Exception {
+        checkConcurrentReads(";hsqldb.pread_data_file=true",
+                             "org.hsqldb.persist.RAFilePositional");
+    }
+
+    public void testDirectDataFile() throws Exception {
+        checkCrashAndDefrag(
+            ";hsqldb.direct_data_file=true;hsqldb.direct_pool_size=1");
+    }
+
+    /**
+     * A file four times the size of the smallest page pool: writes that
+     * cross page boundaries read back after their pages are replaced, and
+     * after the file is closed and opened again.
+     */
+    public void testDirectPagePool() throws Exception {
+
+        baseDir.mkdirs();
+
+        int      size = 4 << 20;
+        Class<?> type = Class.forName("org.hsqldb.persist.RAFileDirect");
+        Constructor<?> constructor =
+            type.getDeclaredConstructor(EventLogInterface.class, String.class,
+                                        boolean.class, long.class);
+
+        constructor.setAccessible(true);
+
+        Object[] arguments = new Object[] {
+            new NullEventLog(), path + ".data", Boolean.FALSE,
+            Long.valueOf(0)
+        };
+        RandomAccessInterface file =
+            (RandomAccessInterface) constructor.newInstance(arguments);
+        byte[] bytes = new byte[100];
+
+        try {
+            for (long position = 0; position < size; position += 4093) {
+                file.seek(position);
+                file.writeInt((int) position);
+
+                bytes[0] = (byte) position;
+
+                file.write(bytes, 0, bytes.length);
+            }
+
+            int maxFrames = ((Integer) getField(file, type,
+                                                "maxFrames")).intValue();
+
+            assertEquals(256, maxFrames);
+            assertTrue(((Integer) getField(file, type, "frameCount"))
+                .intValue() <= maxFrames);
+            checkDirectFile(file, size, bytes);
+            file.synch();
+        } finally {
+            file.close();
+        }
+
+        file = (RandomAccessInterface) constructor.newInstance(arguments);
+
+        try {
+            checkDirectFile(file, size, bytes);
+        } finally {
+            file.close();
+        }
+    }
+
+    public void testNioWindowed() throws Exception {
+        checkCrashAndDefrag(";hsqldb.nio_windowed=true;hsqldb.nio_max_size=32");
+    }
+
+    /**
+     * A file of five 16 MB segments with a window of three: the least
+     * recently used segment is unmapped, the segment left behind by a scan
+     * is marked to go first, and every segment reads back what was written
+     * to it after it was unmapped and mapped again.
+     */
+    public void testNioWindowLruAndFreeBehind() throws Exception {
+
+        baseDir.mkdirs();
+
+        int      segment = 1 << 24;
+        Class<?> type    = Class.forName("org.hsqldb.persist.RAFileNIO");
+        Constructor<?> constructor =
+            type.getDeclaredConstructor(EventLogInterface.class, String.class,
+                                        boolean.class, long.class, long.class,
+                                        int.class);
+
+        constructor.setAccessible(true);
+
+        RandomAccessInterface file =
+            (RandomAccessInterface) constructor.newInstance(new Object[] {
+            new NullEventLog(), path + ".data", Boolean.FALSE,
+            Long.valueOf(5L * segment), Long.valueOf(Long.MAX_VALUE),
+            Integer.valueOf(3)
+        });
+
+        try {
+            Object[] buffers = (Object[]) getField(file, type, "buffers");
+
+            for (int i = 0; i < 5; i++) {
+                file.seek((long) i * segment + 8);
+                file.writeInt(1000 + i);
+                assertTrue(((Integer) getField(file, type, "windowCount"))
+                    .intValue() <= 3);
+            }
+
+            // 4 is current; 2 was used before 3, so it is unmapped for 0
+            file.seek(8);
+            assertNull(buffers[2]);
+            assertNotNull(buffers[3]);
+            assertNotNull(buffers[4]);
+
+            for (int i = 4; i >= 0; i--) {
+                file.seek((long) i * segment + 8);
+                assertEquals(1000 + i, file.readInt());
+            }
+
+            // scan 0, 1, 2 - the second segment crossed in sequence is freed
+            file.seek(segment - 4);
+            file.readInt();
+            file.seek(2L * segment - 4);
+            file.readInt();
+            file.seek(2L * segment);
+            file.readInt();
+
+            long[] access = (long[]) getField(file, type, "windowAccess");
+
+            assertEquals(0, access[1]);
+            assertTrue(access[0] > 0);
+        } finally {
+            file.close();
+        }
+    }
+
+    public void testOffHeapRowCache() throws Exception {
+
+        checkCrashAndDefrag(";hsqldb.cache_offheap_size=8192");
+
+        Connection c = getConnection(";hsqldb.cache_offheap_size=8192");
+
+        try {
+            checkRows(c);
+            checkRows(c);
+
+            Session session =
+                (Session) ((JDBCConnection) c).getSession();
+            Object tier = getField(session.getDatabase().logger.getCache(),
+                                   DataFileCache.class, "offHeapCache");
+
+            assertTrue(((Long) invoke(tier, "getHitCount")).longValue() > 0);
+            c.createStatement().execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * A row that is too short or too long to store releases the earlier copy
+     * at its position, together with its bytes.
+     */
+    public void testOffHeapRowCacheRelease() throws Exception {
+
+        Class<?> type = Class.forName("org.hsqldb.persist.OffHeapRowCache");
+        Constructor<?> constructor = type.getDeclaredConstructor(long.class);
+
+        constructor.setAccessible(true);
+
+        Object tier = constructor.newInstance(new Object[]{ Long.valueOf(0) });
+        Method put = type.getDeclaredMethod("put", long.class, byte[].class,
+                                            int.class);
+
+        put.setAccessible(true);
+        put.invoke(tier, new Object[] {
+            Long.valueOf(64), new byte[100], Integer.valueOf(100)
+        });
+        put.invoke(tier, new Object[] {
+            Long.valueOf(128), new byte[40], Integer.valueOf(40)
+        });
+        assertEquals(140L,
+                     ((Long) invoke(tier, "getStoredBytes")).longValue());
+        put.invoke(tier, new Object[] {
+            Long.valueOf(64), new byte[0], Integer.valueOf(0)
+        });
+        assertEquals(40L, ((Long) invoke(tier, "getStoredBytes")).longValue());
+        put.invoke(tier, new Object[] {
+            Long.valueOf(128), new byte[0], Integer.valueOf(1 << 22)
+        });
+        assertEquals(0L, ((Long) invoke(tier, "getStoredBytes")).longValue());
+        invoke(tier, "close");
+    }
+
+    void checkDirectFile(RandomAccessInterface file, int size,
+                         byte[] bytes) throws Exception {
+
+        byte[] read = new byte[bytes.length];
+
+        for (long position = 0; position < size; position += 4093) {
+            file.seek(position);
+            assertEquals((int) position, file.readInt());
+            file.read(read, 0, read.length);
+
+            bytes[0] = (byte) position;
+
+            for (int i = 0; i < read.length; i++) {
+                assertEquals(bytes[i], read[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the rows, closes the database without a checkpoint and checks
+     * the rows after recovery, after CHECKPOINT DEFRAG and after a normal
+     * restart.
+     */
+    void checkCrashAndDefrag(String properties) throws SQLException {
+
+        Connection c = getConnection(properties);
+
+        try {
+            writeRows(c);
+            checkRows(c);
+            c.createStatement().execute("SHUTDOWN IMMEDIATELY");
+        } finally {
+            c.close();
+        }
+
+        c = getConnection(properties);
+
+        try {
+            checkRows(c);
+            c.createStatement().execute("CHECKPOINT DEFRAG");
+            checkRows(c);
+            c.createStatement().execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+
+        c = getConnection(properties);
+
+        try {
+            checkRows(c);
+            c.createStatement().execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Inserts ROWS rows, checkpoints, then updates every third row and
+     * deletes every fifth row.
+     */
+    void writeRows(Connection c) throws SQLException {
+
+        Statement st = c.createStatement();
+
+        st.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V BIGINT, "
+                   + "P VARCHAR(200))");
+
+        PreparedStatement ps =
+            c.prepareStatement("INSERT INTO T VALUES (?, ?, ?)");
+
+        for (int i = 0; i < ROWS; i++) {
+            ps.setInt(1, i);
+            ps.setLong(2, i);
+            ps.setString(3, "padding padding padding padding padding " + i);
+            ps.execute();
+        }
+
+        st.execute("CHECKPOINT");
+        st.execute("UPDATE T SET V = V + 1, P = P || ' updated' "
+                   + "WHERE MOD(ID, 3) = 0");
+        st.execute("DELETE FROM T WHERE MOD(ID, 5) = 4");
+    }
+
+    void checkRows(Connection c) throws SQLException {
+
+        int  count = 0;
+        long sum   = 0;
+
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 5 != 4) {
+                count++;
+
+                sum += i % 3 == 0 ? i + 1
+                                  : i;
+            }
+        }
+
+        ResultSet rs = c.createStatement().executeQuery(
+            "SELECT COUNT(*), SUM(V), "
+            + "SUM(CASE WHEN P LIKE '% updated' THEN 1 ELSE 0 END) FROM T");
+
+        rs.next();
+        assertEquals(count, rs.getInt(1));
+        assertEquals(sum, rs.getLong(2));
+        assertEquals((ROWS + 2) / 3 - (ROWS + 10) / 15, rs.getInt(3));
+
+        // every row is also reached through the primary key index
+        PreparedStatement ps =
+            c.prepareStatement("SELECT V FROM T WHERE ID = ?");
+
+        for (int i = 0; i < ROWS; i += 7) {
+            ps.setInt(1, i);
+
+            rs = ps.executeQuery();
+
+            assertEquals(i % 5 != 4, rs.next());
+        }
+    }
+
+    /**
+     * Updates random rows in a fixed order, returns CACHE_SYNC_SAVES.
+     */
+    long updateRandomRows(String properties) throws SQLException {
+
+        Connection c = getConnection(properties);
+
+        try {
+            writeRows(c);
+
+            PreparedStatement ps =
+                c.prepareStatement("UPDATE T SET V = V + 1 WHERE ID = ?");
+            Random random = new Random(1);
+
+            for (int i = 0; i < 20000; i++) {
+                ps.setInt(1, random.nextInt(ROWS));
+                ps.execute();
+            }
+
+            ResultSet rs = c.createStatement().executeQuery(
+                "SELECT CACHE_SYNC_SAVES FROM INFORMATION_SCHEMA.SYSTEM_CACHEINFO "
+                + "WHERE CACHE_FILE LIKE '%.data'");
+
+            rs.next();
+
+            long saves = rs.getLong(1);
+
+            c.createStatement().execute("SHUTDOWN");
+
+            return saves;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Writes the rows, then runs four readers of random rows and a writer of
+     * other rows together and checks the rows. When dataFileClass is not
+     * null, the .data file must be opened as that class.
+     */
+    void checkConcurrentReads(final String properties,
+                              String dataFileClass) throws Exception {
+
+        Connection c = getConnection(properties);
+
+        try {
+            writeRows(c);
+
+            Object cache = getCache(c);
+
+            if (dataFileClass == null) {
+                assertTrue(
+                    ((Boolean) invoke(cache, "isStriped")).booleanValue());
+            } else {
+                assertEquals(dataFileClass,
+                             getDataFile(c).getClass().getName());
+            }
+
+            final Throwable[] failure = new Throwable[1];
+            Thread[]          threads = new Thread[5];
+
+            for (int t = 0; t < threads.length; t++) {
+                final int seed = t;
+
+                threads[t] = new Thread() {
+
+                    public void run() {
+
+                        try {
+                            if (seed == 0) {
+                                updatePadding(properties);
+                            } else {
+                                readRandomRows(properties, seed);
+                            }
+                        } catch (Throwable e) {
+                            synchronized (failure) {
+                                failure[0] = e;
+                            }
+                        }
+                    }
+                };
+
+                threads[t].start();
+            }
+
+            for (int t = 0; t < threads.length; t++) {
+                threads[t].join();
+            }
+
+            if (failure[0] != null) {
+                throw new Exception(failure[0]);
+            }
+
+            assertTrue(((Long) invoke(cache, "getHitCount")).longValue() > 0);
+            checkRows(c);
+            c.createStatement().execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Reads random rows and checks the values written by writeRows.
+     */
+    void readRandomRows(String properties, int seed) throws SQLException {
+
+        Connection c = getConnection(properties);
+
+        try {
+            PreparedStatement ps =
+                c.prepareStatement("SELECT V FROM T WHERE ID = ?");
+            Random random = new Random(seed);
+
+            for (int i = 0; i < ROWS * 2; i++) {
+                int id = random.nextInt(ROWS);
+
+                ps.setInt(1, id);
+
+                ResultSet rs = ps.executeQuery();
+
+                if (id % 5 == 4) {
+                    assertFalse(rs.next());
+                } else {
+                    assertTrue(rs.next());
+                    assertEquals(id % 3 == 0 ? id + 1
+                                             : id, rs.getLong(1));
+                }
+
+                rs.close();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Rewrites the padding column of the rows not updated by writeRows, one
+     * row at a time, leaving the values checked by the readers unchanged.
+     */
+    void updatePadding(String properties) throws SQLException {
+
+        Connection c = getConnection(properties);
+
+        try {
+            PreparedStatement ps = c.prepareStatement(
+                "UPDATE T SET P = P || ' rewritten' WHERE ID = ?");
+
+            for (int i = 1; i < ROWS; i += 3) {
+                ps.setInt(1, i);
+                ps.execute();
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    Connection getConnection(String properties) throws SQLException {
+
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + path
+                                           + ";hsqldb.write_delay=false"
+                                           + ";hsqldb.cache_rows=500"
+                                           + properties, "SA", "");
+    }
+
+    static class NullEventLog implements EventLogInterface {
+
+        public void logSevereEvent(String message, Throwable t) {}
+
+        public void logWarningEvent(String message, Throwable t) {}
+
+        public void logInfoEvent(String message) {}
+
+        public void logDetailEvent(String message) {}
+    }
+
+    static Object getCache(Connection c) throws Exception {
+
+        Session session =
+            (Session) ((JDBCConnection) c).getSession();
+        DataFileCache dataFileCache =
+            session.getDatabase().logger.getCache();
+
+        return getField(dataFileCache, DataFileCache.class, "cache");
+    }
+
+    static Object getDataFile(Connection c) throws Exception {
+
+        Session session =
+            (Session) ((JDBCConnection) c).getSession();
+
+        return getField(session.getDatabase().logger.getCache(),
+                        DataFileCache.class, "dataFile");
+    }
+
+    static int countProbation(Object cache) throws Exception {
+
+        Object[] keys = (Object[]) getField(cache, BaseHashMap.class,
+                                            "objectKeyTable");
+        int[] access = (int[]) getField(cache, BaseHashMap.class,
+                                        "accessTable");
+        int count = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null && access[i] < 0) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    static Object getField(Object object, Class<?> type,
+                           String name) throws Exception {
+
+        Field field = type.getDeclaredField(name);
+
+        field.setAccessible(true);
+
+        return field.get(object);
+    }
+
+    static Object invoke(Object object, String name) throws Exception {
+
+        Method method = object.getClass().getDeclaredMethod(name);
+
+        method.setAccessible(true);
+
+        return method.invoke(object);
+    }
+
+    static void setField(Object object, String name,
+                         int value) throws Exception {
+
+        Field field = BaseHashMap.class.getDeclaredField(name);
+
+        field.setAccessible(true);
+        field.setInt(object, value);
+    }
+}
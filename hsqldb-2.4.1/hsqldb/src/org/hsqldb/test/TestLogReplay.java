@@ -0,0 +1,325 @@
+/* Copyright (c) 2001-2018, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import junit.framework.TestCase;
+
+/**
+ * Recovery of databases that were not shut down, by replaying the .log
+ * file. The database is closed with SHUTDOWN IMMEDIATELY, which leaves the
+ * .log file as it is after a crash.
+ *
+ * @author agent (agent@local)
+ * @version 2.4.1
+ * @since 2.4.2
+ */
+public class TestLogReplay extends TestCase {
+
+    static final int ROWS = 200;
+
+    File   baseDir;
+    String path;
+
+    public TestLogReplay(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+
+        Class.forName("org.hsqldb.jdbc.JDBCDriver");
+
+        baseDir = new File(System.getProperty("java.io.tmpdir"),
+                           "TestLogReplay-" + getName());
+
+        deleteAll(baseDir);
+
+        path = new File(baseDir, "db").getAbsolutePath();
+    }
+
+    protected void tearDown() {
+        deleteAll(baseDir);
+    }
+
+    public void testBinaryLogRoundTrip() throws Exception {
+
+        writeRows(";hsqldb.log_format=1");
+        assertTrue(isBinaryLog());
+        checkRows(ROWS);
+    }
+
+    public void testBinaryLogTruncatedTail() throws Exception {
+
+        long length = writeRows(";hsqldb.log_format=1");
+
+        RandomAccessFile file = new RandomAccessFile(path + ".log", "rw");
+
+        try {
+
+            // the commit record of the last insert is torn
+            file.setLength(length - 3);
+        } finally {
+            file.close();
+        }
+
+        checkRows(ROWS - 1);
+    }
+
+    public void testBinaryLogCorruptLength() throws Exception {
+
+        writeRows(";hsqldb.log_format=1");
+
+        RandomAccessFile file = new RandomAccessFile(path + ".log", "rw");
+
+        try {
+            file.seek(file.length());
+
+            // length word near 2 GB and a checksum that cannot match
+            file.writeInt(Integer.MAX_VALUE - 8);
+            file.writeInt(0);
+            file.write(new byte[64]);
+        } finally {
+            file.close();
+        }
+
+        checkRows(ROWS);
+    }
+
+    /**
+     * A row is deleted and a later transaction inserts a row with another
+     * primary key but the same UNIQUE column value. The two transactions
+     * must be replayed in log order by the parallel replay.
+     */
+    public void testParallelReplayUniqueIndex() throws Exception {
+        checkParallelReplay("CREATE CACHED TABLE T (V VARCHAR(100), "
+                            + "ID INT PRIMARY KEY, U INT UNIQUE)", 2000);
+    }
+
+    /**
+     * Deletes logged with a primary key that is not the first column are
+     * ordered by the key of the deleted row.
+     */
+    public void testParallelReplayPrimaryKeyNotFirst() throws Exception {
+        checkParallelReplay("CREATE CACHED TABLE T (V VARCHAR(100), "
+                            + "ID INT PRIMARY KEY, U INT)", 2000);
+    }
+
+    /**
+     * Moves each row to a new primary key with the same U value, then
+     * recovers the log with four replay threads.
+     */
+    private void checkParallelReplay(String ddl, int rows) throws Exception {
+
+        Connection c = getConnection("");
+
+        try {
+            Statement st = c.createStatement();
+
+            st.execute(ddl);
+
+            PreparedStatement ps =
+                c.prepareStatement("INSERT INTO T (ID, U, V) VALUES (?, ?, ?)");
+            PreparedStatement del =
+                c.prepareStatement("DELETE FROM T WHERE ID = ?");
+
+            for (int i = 0; i < rows; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, i);
+                ps.setString(3, "row " + i);
+                ps.execute();
+            }
+
+            // the first rows are in the .script, only the moves are logged
+            st.execute("CHECKPOINT");
+
+            for (int i = 0; i < rows; i++) {
+                del.setInt(1, i);
+                del.execute();
+                ps.setInt(1, rows + i);
+                ps.setInt(2, i);
+                ps.setString(3, "moved " + i);
+                ps.execute();
+            }
+
+            st.execute("SHUTDOWN IMMEDIATELY");
+        } finally {
+            c.close();
+        }
+
+        c = getConnection(";hsqldb.replay_threads=4");
+
+        try {
+            Statement st = c.createStatement();
+            ResultSet rs = st.executeQuery(
+                "SELECT COUNT(*), MIN(ID), SUM(U) FROM T");
+
+            rs.next();
+            assertEquals(rows, rs.getInt(1));
+            assertEquals(rows, rs.getInt(2));
+            assertEquals((long) rows * (rows - 1) / 2, rs.getLong(3));
+            st.execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Creates the table, inserts ROWS rows, each in its own transaction,
+     * updates and deletes some of them, then closes the database without
+     * a checkpoint. Returns the length of the .log file after the last
+     * insert.
+     */
+    long writeRows(String properties) throws SQLException {
+
+        Connection c = getConnection(properties);
+
+        try {
+            Statement st = c.createStatement();
+
+            // deletes are logged with the primary key, not the first column
+            st.execute("CREATE CACHED TABLE T (V VARCHAR(100), "
+                       + "ID INT PRIMARY KEY, U INT UNIQUE)");
+
+            PreparedStatement ps =
+                c.prepareStatement("INSERT INTO T (ID, U, V) VALUES (?, ?, ?)");
+
+            for (int i = 0; i < ROWS; i++) {
+                ps.setInt(1, i);
+                ps.setInt(2, i);
+                ps.setString(3, "row " + i);
+                ps.execute();
+            }
+
+            st.execute("UPDATE T SET V = V || ' updated' WHERE MOD(ID, 7) = 0");
+            st.execute("DELETE FROM T WHERE MOD(ID, 11) = 1");
+
+            for (int i = 1; i < ROWS; i += 11) {
+                ps.setInt(1, i);
+                ps.setInt(2, i);
+                ps.setString(3, "row " + i);
+                ps.execute();
+            }
+
+            long length = new File(path + ".log").length();
+
+            st.execute("SHUTDOWN IMMEDIATELY");
+
+            return length;
+        } finally {
+            c.close();
+        }
+    }
+
+    /**
+     * Reopens the database and checks the rows, which were inserted in
+     * ID order.
+     */
+    void checkRows(int rows) throws SQLException {
+
+        Connection c = getConnection("");
+
+        try {
+            Statement st = c.createStatement();
+            ResultSet rs = st.executeQuery(
+                "SELECT COUNT(*), SUM(ID), SUM(U), "
+                + "SUM(CASE WHEN V LIKE '% updated' THEN 1 ELSE 0 END) "
+                + "FROM T");
+
+            rs.next();
+
+            int updated = 0;
+
+            for (int i = 0; i < ROWS; i += 7) {
+                if (i % 11 != 1) {
+                    updated++;
+                }
+            }
+
+            long sum = (long) ROWS * (ROWS - 1) / 2;
+
+            if (rows < ROWS) {
+                sum -= ROWS - 1;
+            }
+
+            assertEquals(rows, rs.getInt(1));
+            assertEquals(sum, rs.getLong(2));
+            assertEquals(sum, rs.getLong(3));
+            assertEquals(updated, rs.getInt(4));
+            st.execute("SHUTDOWN");
+        } finally {
+            c.close();
+        }
+    }
+
+    boolean isBinaryLog() throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(path + ".log", "r");
+
+        try {
+            byte[] header = new byte[8];
+
+            file.readFully(header);
+
+            return "HSQLBLOG".equals(new String(header, "ISO-8859-1"));
+        } finally {
+            file.close();
+        }
+    }
+
+    Connection getConnection(String properties) throws SQLException {
+
+        return DriverManager.getConnection("jdbc:hsqldb:file:" + path
+                                           + ";hsqldb.write_delay=false"
+                                           + properties, "SA", "");
+    }
+
+    static void deleteAll(File file) {
+
+        File[] list = file.listFiles();
+
+        if (list != null) {
+            for (int i = 0; i < list.length; i++) {
+                deleteAll(list[i]);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -1,5 +1,10 @@
 package com.test.logDemo;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,7 +12,12 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.loadtest.GeneratorSettings;
+import com.test.logDemo.loadtest.LoadTestRunner;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
 import com.test.logDemo.service.DataService;
+import com.test.logDemo.service.EventRetentionService;
 import com.test.logDemo.service.EventService;
 
 @SpringBootApplication
@@ -18,27 +28,56 @@ public class LogDemoApplication implements CommandLineRunner {
 	private DataService dataService;
 	@Autowired
 	private EventService eventService;
+	@Autowired
+	private EventRetentionService eventRetentionService;
+	@Autowired
+	private ConnectionWaitMetrics connectionWaitMetrics;
+	@Autowired
+	private LoadTestRunner loadTestRunner;
 
-	private static final int SLICE_SIZE = 10000;
+	private static final int SLICE_SIZE = RawEventRepository.SLICE_SIZE;
+	private static final String GENERATE = "generate";
+	private static final String LOAD_TEST = "loadtest";
 
 	public static void main(String[] args) {
+		// lets the text table ingestion mode attach log files outside the database directory
+		System.setProperty("textdb.allow_full_path", "true");
 		SpringApplication.run(LogDemoApplication.class, args);
 
 	}
 
 	@Override
-	public void run(String... args) {
+	public void run(String... args) throws IOException {
 		LOG.info("EXECUTING: log demo");
+		// --name=value options are spring properties or load test settings, the rest is the command line
+		List<String> commandLine = new ArrayList<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				commandLine.add(arg);
+			}
+		}
+		if (commandLine.isEmpty()) {
+			LOG.info("No file to load, serving streamed events only");
+			return;
+		}
+		if (GENERATE.equals(commandLine.get(0)) && commandLine.size() > 1) {
+			loadTestRunner.generate(Paths.get(commandLine.get(1)), GeneratorSettings.of(args));
+			return;
+		}
+		if (LOAD_TEST.equals(commandLine.get(0)) && commandLine.size() > 1) {
+			loadTestRunner.run(Paths.get(commandLine.get(1)), SLICE_SIZE, args);
+			return;
+		}
 		LOG.info("Load file:");
-		dataService.loadFromFile(args[0]);
+		dataService.loadFromFile(commandLine.get(0));
 		LOG.info("File loaded to hsqldb");
 		LOG.info("Process events, add alert");
 		eventService.addAlertFlagsToAll(SLICE_SIZE);
+		eventRetentionService.applyRetention();
+		LOG.info("Connection pool: " + connectionWaitMetrics.snapshot());
 		LOG.info("FINISHED: log demo");
 
 
 	}
 
 }
-
-
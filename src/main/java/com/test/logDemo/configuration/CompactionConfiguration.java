@@ -0,0 +1,25 @@
+package com.test.logDemo.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.test.logDemo.service.CompactionService;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "logdemo.compaction.enabled", havingValue = "true")
+public class CompactionConfiguration {
+    private final CompactionService compactionService;
+
+    public CompactionConfiguration(CompactionService compactionService) {
+        this.compactionService = compactionService;
+    }
+
+    @Scheduled(initialDelayString = "${logdemo.compaction.interval-ms:3600000}",
+            fixedDelayString = "${logdemo.compaction.interval-ms:3600000}")
+    public void compact() {
+        compactionService.compact();
+    }
+}
@@ -0,0 +1,38 @@
+package com.test.logDemo.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.logDemo.ingest.NdjsonIngestionServer;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+import com.test.logDemo.service.AlertQueryService;
+import com.test.logDemo.service.DataService;
+import com.test.logDemo.service.EventService;
+import com.test.logDemo.service.IngestionService;
+import com.test.logDemo.service.IngestionServiceImpl;
+
+@Configuration
+@ConditionalOnProperty(name = "logdemo.http.enabled", havingValue = "true")
+public class IngestionConfiguration {
+
+    @Bean
+    public IngestionService ingestionService(DataService dataService, EventService eventService,
+                                             @Value("${logdemo.http.queue-capacity:10000}") int queueCapacity,
+                                             @Value("${logdemo.http.offer-timeout-ms:1000}") long offerTimeoutMillis,
+                                             @Value("${logdemo.http.pending-events:100000}") int pendingEvents) {
+        return new IngestionServiceImpl(dataService, eventService, queueCapacity, offerTimeoutMillis, pendingEvents);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public NdjsonIngestionServer ndjsonIngestionServer(DataService dataService, IngestionService ingestionService,
+                                                       AlertQueryService alertQueryService, ConnectionWaitMetrics connectionWaitMetrics,
+                                                       ObjectMapper objectMapper,
+                                                       @Value("${logdemo.http.port:8081}") int port,
+                                                       @Value("${logdemo.http.threads:4}") int threads) {
+        return new NdjsonIngestionServer(dataService, ingestionService, alertQueryService, connectionWaitMetrics,
+                objectMapper, port, threads);
+    }
+}
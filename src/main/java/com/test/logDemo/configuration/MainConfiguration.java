@@ -1,21 +1,67 @@
 package com.test.logDemo.configuration;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.logDemo.execution.ExecutionStrategy;
+import com.test.logDemo.execution.PooledExecutionStrategy;
+import com.test.logDemo.execution.VirtualThreadExecutionStrategy;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+import com.test.logDemo.util.ExecutionMode;
+import com.zaxxer.hikari.HikariDataSource;
 
 @Configuration
 public class MainConfiguration  {
-    private static final int NTHREADS = 4;
+    private static Logger LOG = LoggerFactory.getLogger(MainConfiguration.class);
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
     @Bean
     public ObjectMapper objectMapper(){
         return new ObjectMapper();
     }
 
+    @Bean(destroyMethod = "shutdown")
+    public ExecutionStrategy executionStrategy(@Value("${logdemo.execution.mode:pooled}") String mode,
+                                               @Value("${logdemo.execution.cpu-threads:0}") int cpuThreads,
+                                               @Value("${logdemo.execution.io-threads:0}") int ioThreads,
+                                               @Value("${logdemo.execution.virtual-in-flight:256}") int virtualInFlight) {
+        int pairingThreads = cpuThreads > 0 ? cpuThreads : CORES;
+        int repositoryThreads = ioThreads > 0 ? ioThreads : 2 * CORES;
+        if (ExecutionMode.of(mode) == ExecutionMode.VIRTUAL) {
+            return new VirtualThreadExecutionStrategy(pairingThreads, repositoryThreads, virtualInFlight);
+        }
+        return new PooledExecutionStrategy(pairingThreads, repositoryThreads);
+    }
+
     @Bean
-    public ExecutorService executorService(){return Executors.newFixedThreadPool(NTHREADS);}
+    public ConnectionWaitMetrics connectionWaitMetrics() {
+        return new ConnectionWaitMetrics();
+    }
+
+    /**
+     * Hikari pool with one connection per concurrent repository task plus extra-connections for the
+     * main thread, ingestion consumer, compaction and queries. spring.datasource.hikari.* still applies
+     * and wins over the derived size.
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties, ExecutionStrategy executionStrategy,
+                                       ConnectionWaitMetrics connectionWaitMetrics,
+                                       @Value("${logdemo.datasource.pool-size:0}") int poolSize,
+                                       @Value("${logdemo.datasource.extra-connections:4}") int extraConnections) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("logdemo");
+        dataSource.setMaximumPoolSize(poolSize > 0 ? poolSize : executionStrategy.ioParallelism() + extraConnections);
+        dataSource.setMetricsTrackerFactory(connectionWaitMetrics);
+        dataSource.setRegisterMbeans(true);
+        LOG.info(String.format("Connection pool sized to %d for %d repository tasks",
+                dataSource.getMaximumPoolSize(), executionStrategy.ioParallelism()));
+        return dataSource;
+    }
 }
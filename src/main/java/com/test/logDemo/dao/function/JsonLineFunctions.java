@@ -0,0 +1,76 @@
+package com.test.logDemo.dao.function;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Java routines called by HSQLDB while scanning a text table of JSON lines.
+ * A row asks for several fields of the same line in turn, so the last parsed
+ * line is kept per thread and each line is tokenized only once.
+ */
+public final class JsonLineFunctions {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ThreadLocal<ParsedLine> LAST_LINE = ThreadLocal.withInitial(ParsedLine::new);
+
+    private JsonLineFunctions() {
+    }
+
+    public static String field(String line, String name) {
+        if (line == null || name == null) {
+            return null;
+        }
+        ParsedLine parsedLine = LAST_LINE.get();
+        if (!line.equals(parsedLine.line)) {
+            parsedLine.parse(line);
+        }
+        return parsedLine.fields.get(name);
+    }
+
+    /**
+     * The field as a whole number, null if it is missing or is not one.
+     */
+    public static Long longField(String line, String name) {
+        String value = field(line, name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static class ParsedLine {
+        private final Map<String, String> fields = new HashMap<>();
+        private String line;
+
+        private void parse(String line) {
+            this.line = line;
+            fields.clear();
+            try (JsonParser parser = JSON_FACTORY.createParser(line)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    if (value.isScalarValue()) {
+                        if (value != JsonToken.VALUE_NULL) {
+                            fields.put(name, parser.getText());
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } catch (IOException e) {
+                fields.clear();
+            }
+        }
+    }
+}
@@ -4,10 +4,15 @@ import java.util.Objects;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "EVENTS")
+@Table(name = "EVENTS", indexes = {
+        @Index(name = "IDX_EVENTS_HOST_TYPE_DURATION", columnList = "host, type, duration"),
+        @Index(name = "IDX_EVENTS_TYPE_DURATION", columnList = "type, duration"),
+        @Index(name = "IDX_EVENTS_ALERT_DURATION", columnList = "alert, duration"),
+        @Index(name = "IDX_EVENTS_START_TIMESTAMP", columnList = "startTimestamp")})
 public class Event {
     @Id
     private String id;
@@ -15,6 +20,7 @@ public class Event {
     private String type;
     private String host;
     private Boolean alert;
+    private Long startTimestamp;
 
     public String getId() {
         return id;
@@ -56,6 +62,14 @@ public class Event {
         this.alert = alert;
     }
 
+    public Long getStartTimestamp() {
+        return startTimestamp;
+    }
+
+    public void setStartTimestamp(Long startTimestamp) {
+        this.startTimestamp = startTimestamp;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -65,12 +79,13 @@ public class Event {
                 Objects.equals(duration, event.duration) &&
                 Objects.equals(type, event.type) &&
                 Objects.equals(host, event.host) &&
-                Objects.equals(alert, event.alert);
+                Objects.equals(alert, event.alert) &&
+                Objects.equals(startTimestamp, event.startTimestamp);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, duration, type, host, alert);
+        return Objects.hash(id, duration, type, host, alert, startTimestamp);
     }
 
     @Override
@@ -81,6 +96,7 @@ public class Event {
                 ", type='" + type + '\'' +
                 ", host='" + host + '\'' +
                 ", alert=" + alert +
+                ", startTimestamp=" + startTimestamp +
                 '}';
     }
 }
@@ -4,10 +4,11 @@ import java.util.Objects;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 @Entity
-@Table(name = "RAW_EVENTS")
+@Table(name = "RAW_EVENTS", indexes = @Index(name = "IDX_RAW_EVENTS_STATE_ID", columnList = "state, id"))
 public class RawEvent {
 
     @Id
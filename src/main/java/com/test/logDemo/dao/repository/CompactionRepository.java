@@ -0,0 +1,77 @@
+package com.test.logDemo.dao.repository;
+
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Housekeeping statements for a long-running database: removes RAW_EVENTS rows whose id is already
+ * paired into EVENTS, rolls old EVENTS into per-minute EVENT_AGGREGATES (count, duration sum and max,
+ * alert count per type and host) and reports the space lost in the .data file for CHECKPOINT DEFRAG.
+ */
+@Repository
+public class CompactionRepository {
+    private static final long MINUTE_MILLIS = 60000;
+    // floor division, a BIGINT division truncates towards zero for negative timestamps
+    private static final String MINUTE_START = "CAST(FLOOR(START_TIMESTAMP / " + MINUTE_MILLIS + "E0) AS BIGINT) * " + MINUTE_MILLIS;
+
+    private static final String CREATE_AGGREGATES =
+            "CREATE CACHED TABLE IF NOT EXISTS EVENT_AGGREGATES (" +
+            "MINUTE_START BIGINT NOT NULL, TYPE VARCHAR(20), HOST VARCHAR(10), EVENT_COUNT BIGINT NOT NULL, " +
+            "DURATION_SUM BIGINT NOT NULL, DURATION_MAX INTEGER, ALERT_COUNT BIGINT NOT NULL)";
+    private static final String CREATE_AGGREGATES_INDEX =
+            "CREATE INDEX IF NOT EXISTS IDX_EVENT_AGGREGATES_MINUTE ON EVENT_AGGREGATES (MINUTE_START, TYPE, HOST)";
+    private static final String DELETE_PAIRED_RAW_EVENTS =
+            "DELETE FROM RAW_EVENTS R WHERE EXISTS (SELECT 1 FROM EVENTS E WHERE E.ID = R.ID) LIMIT ?";
+    private static final String ROLL_UP_EVENTS =
+            "MERGE INTO EVENT_AGGREGATES A USING (" +
+            "  SELECT " + MINUTE_START + " AS MINUTE_START, TYPE, HOST," +
+            "    COUNT(*) AS EVENT_COUNT, COALESCE(SUM(DURATION), 0) AS DURATION_SUM, MAX(DURATION) AS DURATION_MAX," +
+            "    COUNT(CASE WHEN ALERT THEN 1 END) AS ALERT_COUNT" +
+            "  FROM EVENTS WHERE START_TIMESTAMP < ?" +
+            "  GROUP BY " + MINUTE_START + ", TYPE, HOST" +
+            ") V ON (A.MINUTE_START = V.MINUTE_START AND A.TYPE IS NOT DISTINCT FROM V.TYPE AND A.HOST IS NOT DISTINCT FROM V.HOST) " +
+            "WHEN MATCHED THEN UPDATE SET A.EVENT_COUNT = A.EVENT_COUNT + V.EVENT_COUNT, " +
+            "  A.DURATION_SUM = A.DURATION_SUM + V.DURATION_SUM, A.DURATION_MAX = GREATEST(A.DURATION_MAX, V.DURATION_MAX), " +
+            "  A.ALERT_COUNT = A.ALERT_COUNT + V.ALERT_COUNT " +
+            "WHEN NOT MATCHED THEN INSERT (MINUTE_START, TYPE, HOST, EVENT_COUNT, DURATION_SUM, DURATION_MAX, ALERT_COUNT) " +
+            "  VALUES (V.MINUTE_START, V.TYPE, V.HOST, V.EVENT_COUNT, V.DURATION_SUM, V.DURATION_MAX, V.ALERT_COUNT)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CompactionRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Deletes at most batchSize raw rows of paired ids, returns the number deleted. */
+    public int deletePairedRawEvents(int batchSize) {
+        return jdbcTemplate.update(DELETE_PAIRED_RAW_EVENTS, batchSize);
+    }
+
+    public void createAggregates() {
+        jdbcTemplate.execute(CREATE_AGGREGATES);
+        jdbcTemplate.execute(CREATE_AGGREGATES_INDEX);
+    }
+
+    /** Adds events started before the cutoff to their minute aggregates; run together with {@link #deleteEventsBefore}. */
+    public int rollUpEventsBefore(long cutoff) {
+        return jdbcTemplate.update(ROLL_UP_EVENTS, cutoff);
+    }
+
+    public int deleteEventsBefore(long cutoff) {
+        return jdbcTemplate.update("DELETE FROM EVENTS WHERE START_TIMESTAMP < ?", cutoff);
+    }
+
+    /** Share of the .data file lost to deleted rows, 0 for databases without a data file. */
+    public double findWastedSpaceRatio() {
+        List<Double> ratios = jdbcTemplate.queryForList(
+                "SELECT CAST(FILE_LOST_BYTES AS DOUBLE) / FILE_FREE_POS FROM INFORMATION_SCHEMA.SYSTEM_CACHEINFO " +
+                "WHERE CACHE_FILE LIKE '%.data' AND FILE_FREE_POS > 0", Double.class);
+        return ratios.isEmpty() ? 0 : ratios.get(0);
+    }
+
+    public void checkpointDefrag() {
+        jdbcTemplate.execute("CHECKPOINT DEFRAG");
+    }
+}
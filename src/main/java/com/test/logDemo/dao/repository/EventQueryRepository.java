@@ -0,0 +1,67 @@
+package com.test.logDemo.dao.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import com.test.logDemo.dao.model.Event;
+
+/**
+ * Top-N queries over EVENTS by host, type and alert flag, ordered by duration, optionally from a start time
+ * on, and start time range queries. Host and type are optional; each combination is answered from one of the
+ * EVENTS secondary indexes.
+ */
+@Repository
+public class EventQueryRepository {
+    static final RowMapper<Event> EVENT_ROW_MAPPER = (resultSet, rowNum) -> {
+        Event event = new Event();
+        event.setId(resultSet.getString("ID"));
+        event.setDuration((Integer) resultSet.getObject("DURATION"));
+        event.setType(resultSet.getString("TYPE"));
+        event.setHost(resultSet.getString("HOST"));
+        event.setAlert((Boolean) resultSet.getObject("ALERT"));
+        event.setStartTimestamp((Long) resultSet.getObject("START_TIMESTAMP"));
+        return event;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EventQueryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Event> findTopByDuration(String host, String type, boolean alertsOnly, int limit) {
+        return findTopByDuration(host, type, alertsOnly, null, limit);
+    }
+
+    public List<Event> findTopByDuration(String host, String type, boolean alertsOnly, Long since, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ID, DURATION, TYPE, HOST, ALERT, START_TIMESTAMP FROM EVENTS WHERE TRUE");
+        List<Object> args = new ArrayList<>();
+        if (host != null) {
+            sql.append(" AND HOST = ?");
+            args.add(host);
+        }
+        if (type != null) {
+            sql.append(" AND TYPE = ?");
+            args.add(type);
+        }
+        if (alertsOnly) {
+            sql.append(" AND ALERT = TRUE");
+        }
+        if (since != null) {
+            sql.append(" AND START_TIMESTAMP >= ?");
+            args.add(since);
+        }
+        sql.append(" ORDER BY DURATION DESC, ID LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), EVENT_ROW_MAPPER, args.toArray());
+    }
+
+    public List<Event> findByStartTimestamp(long from, long to) {
+        return jdbcTemplate.query("SELECT ID, DURATION, TYPE, HOST, ALERT, START_TIMESTAMP FROM EVENTS " +
+                "WHERE START_TIMESTAMP >= ? AND START_TIMESTAMP < ? ORDER BY START_TIMESTAMP, ID", EVENT_ROW_MAPPER, from, to);
+    }
+}
@@ -0,0 +1,212 @@
+package com.test.logDemo.dao.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.stereotype.Repository;
+
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dto.RawEventDto;
+import com.test.logDemo.execution.ExecutionStrategy;
+
+/**
+ * Runs the fixed statements of the slice pipeline (slice read by state, event merge) on dedicated
+ * connections that keep their statements prepared, so a slice costs one execute and no parse.
+ * One session (connection plus prepared statements) exists per concurrent repository task, up to the
+ * I/O parallelism; a task borrows a session, runs and hands it back. Each session pins one connection
+ * of the application pool, which is sized for one connection per repository task, so sessions count
+ * against the pool budget and their waits show up in the connection metrics.
+ */
+@Repository
+public class PreparedStatementRepository {
+    private static Logger LOG = LoggerFactory.getLogger(PreparedStatementRepository.class);
+
+    static final String SELECT_SLICE =
+            "SELECT ID, STATE, TYPE, HOST, TIMESTAMP FROM RAW_EVENTS WHERE STATE = ? ORDER BY ID LIMIT ? OFFSET ?";
+    static final String MERGE_EVENT =
+            "MERGE INTO EVENTS E USING (VALUES (CAST(? AS VARCHAR(256)), CAST(? AS INTEGER), CAST(? AS VARCHAR(20)), " +
+            "CAST(? AS VARCHAR(10)), CAST(? AS BOOLEAN), CAST(? AS BIGINT))) AS V (ID, DURATION, TYPE, HOST, ALERT, START_TIMESTAMP) " +
+            "ON (E.ID = V.ID) " +
+            "WHEN MATCHED THEN UPDATE SET E.DURATION = V.DURATION, E.TYPE = V.TYPE, E.HOST = V.HOST, E.ALERT = V.ALERT, " +
+            "  E.START_TIMESTAMP = V.START_TIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (ID, DURATION, TYPE, HOST, ALERT, START_TIMESTAMP) " +
+            "  VALUES (V.ID, V.DURATION, V.TYPE, V.HOST, V.ALERT, V.START_TIMESTAMP)";
+
+    private static final long BORROW_POLL_MILLIS = 100;
+
+    private final DataSource dataSource;
+    private final BlockingQueue<StatementSession> idleSessions = new LinkedBlockingQueue<>();
+    private final List<StatementSession> sessions = new ArrayList<>();
+    private final Semaphore unopenedSessions;
+
+    public PreparedStatementRepository(DataSource dataSource, ExecutionStrategy executionStrategy) {
+        this.dataSource = dataSource;
+        this.unopenedSessions = new Semaphore(executionStrategy.ioParallelism());
+    }
+
+    public List<RawEventDto> findSliceByState(String state, long offset, int limit) {
+        StatementSession session = borrow();
+        boolean healthy = false;
+        try {
+            PreparedStatement statement = session.prepare(SELECT_SLICE);
+            statement.setString(1, state);
+            statement.setInt(2, limit);
+            statement.setLong(3, offset);
+            List<RawEventDto> slice = new ArrayList<>(limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    slice.add(new RawEventDto(resultSet.getString(1), resultSet.getString(2), resultSet.getString(3),
+                            resultSet.getString(4), (Long) resultSet.getObject(5)));
+                }
+            }
+            session.connection.commit();
+            healthy = true;
+            return slice;
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("findSliceByState", SELECT_SLICE, e);
+        } finally {
+            giveBack(session, healthy);
+        }
+    }
+
+    public void mergeAll(List<Event> events) {
+        StatementSession session = borrow();
+        boolean healthy = false;
+        try {
+            PreparedStatement statement = session.prepare(MERGE_EVENT);
+            for (Event event : events) {
+                statement.setString(1, event.getId());
+                statement.setObject(2, event.getDuration());
+                statement.setString(3, event.getType());
+                statement.setString(4, event.getHost());
+                statement.setObject(5, event.getAlert());
+                statement.setObject(6, event.getStartTimestamp());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            session.connection.commit();
+            healthy = true;
+        } catch (SQLException e) {
+            throw new UncategorizedSQLException("mergeAll", MERGE_EVENT, e);
+        } finally {
+            giveBack(session, healthy);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (sessions) {
+            for (StatementSession session : sessions) {
+                session.close();
+            }
+            sessions.clear();
+        }
+    }
+
+    private StatementSession borrow() {
+        try {
+            while (true) {
+                StatementSession session = idleSessions.poll();
+                if (session != null) {
+                    return session;
+                }
+                if (unopenedSessions.tryAcquire()) {
+                    return open();
+                }
+                session = idleSessions.poll(BORROW_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (session != null) {
+                    return session;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a prepared statement session", e);
+        }
+    }
+
+    private StatementSession open() {
+        StatementSession session;
+        try {
+            session = new StatementSession(dataSource.getConnection());
+        } catch (SQLException e) {
+            unopenedSessions.release();
+            throw new UncategorizedSQLException("openSession", null, e);
+        }
+        synchronized (sessions) {
+            sessions.add(session);
+            LOG.info("Opened prepared statement session " + sessions.size());
+        }
+        return session;
+    }
+
+    // a session that failed may hold a broken connection or an open transaction, replace it
+    private void giveBack(StatementSession session, boolean healthy) {
+        if (healthy) {
+            idleSessions.add(session);
+            return;
+        }
+        session.rollback();
+        session.close();
+        synchronized (sessions) {
+            sessions.remove(session);
+        }
+        unopenedSessions.release();
+    }
+
+    private static final class StatementSession {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        StatementSession(Connection connection) throws SQLException {
+            this.connection = connection;
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException e) {
+                // hand the pooled connection back
+                close();
+                throw e;
+            }
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        void rollback() {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                LOG.warn("Rollback of prepared statement session failed: " + e.getMessage());
+            }
+        }
+
+        void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.warn("Closing prepared statement session failed: " + e.getMessage());
+            }
+        }
+    }
+}
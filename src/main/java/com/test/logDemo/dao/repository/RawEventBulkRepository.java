@@ -0,0 +1,74 @@
+package com.test.logDemo.dao.repository;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.test.logDemo.dao.model.RawEvent;
+
+/**
+ * Full reloads of RAW_EVENTS that can be re-run from the source file: between {@link #beginBulkLoad} and
+ * {@link #endBulkLoad} HSQLDB writes no .log and syncs with a long write delay, rows are merged in JDBC
+ * batches with one transaction per batch, and a single CHECKPOINT persists the result at the end.
+ * Logging is database-wide, so a crash during the load loses everything since the last checkpoint.
+ */
+@Repository
+public class RawEventBulkRepository {
+    private static Logger LOG = LoggerFactory.getLogger(RawEventBulkRepository.class);
+
+    private static final String MERGE_RAW_EVENT =
+            "MERGE INTO RAW_EVENTS R USING (VALUES (CAST(? AS VARCHAR(256)), CAST(? AS VARCHAR(10)), " +
+            "CAST(? AS VARCHAR(20)), CAST(? AS VARCHAR(10)), CAST(? AS BIGINT))) AS V (ID, STATE, TYPE, HOST, TIMESTAMP) " +
+            "ON (R.ID = V.ID AND R.STATE = V.STATE) " +
+            "WHEN MATCHED THEN UPDATE SET R.TYPE = V.TYPE, R.HOST = V.HOST, R.TIMESTAMP = V.TIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (ID, STATE, TYPE, HOST, TIMESTAMP) VALUES (V.ID, V.STATE, V.TYPE, V.HOST, V.TIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private boolean logData;
+    private String writeDelayMillis;
+
+    public RawEventBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public synchronized void beginBulkLoad(int writeDelayMillis) {
+        this.logData = Boolean.parseBoolean(property("hsqldb.log_data"));
+        this.writeDelayMillis = property("hsqldb.write_delay_millis");
+        jdbcTemplate.execute("SET FILES LOG FALSE");
+        jdbcTemplate.execute("SET FILES WRITE DELAY " + writeDelayMillis + " MILLIS");
+        LOG.info(String.format("Bulk load started: log off, write delay %d ms", writeDelayMillis));
+    }
+
+    @Transactional
+    public int mergeAll(List<RawEvent> rawEvents) {
+        if (rawEvents.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(MERGE_RAW_EVENT, rawEvents, rawEvents.size(), (statement, rawEvent) -> {
+            statement.setString(1, rawEvent.getId().getId());
+            statement.setString(2, rawEvent.getId().getState());
+            statement.setString(3, rawEvent.getType());
+            statement.setString(4, rawEvent.getHost());
+            statement.setObject(5, rawEvent.getTimestamp());
+        });
+        return rawEvents.size();
+    }
+
+    public synchronized void endBulkLoad() {
+        jdbcTemplate.execute("SET FILES WRITE DELAY " + writeDelayMillis + " MILLIS");
+        if (logData) {
+            jdbcTemplate.execute("SET FILES LOG TRUE");
+        }
+        jdbcTemplate.execute("CHECKPOINT");
+        LOG.info("Bulk load finished: log restored, checkpoint written");
+    }
+
+    private String property(String name) {
+        return jdbcTemplate.queryForObject(
+                "SELECT PROPERTY_VALUE FROM INFORMATION_SCHEMA.SYSTEM_PROPERTIES WHERE PROPERTY_NAME = ?", String.class, name);
+    }
+}
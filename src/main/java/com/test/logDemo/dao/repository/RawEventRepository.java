@@ -1,16 +1,57 @@
 package com.test.logDemo.dao.repository;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 import java.util.List;
 
+import javax.persistence.QueryHint;
+
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.test.logDemo.dao.model.RawEvent;
 import com.test.logDemo.dao.model.RawEventId;
+import com.test.logDemo.dto.RawEventDto;
 
 @Repository
-public interface RawEventRepository extends PagingAndSortingRepository<RawEvent, RawEventId> {
+public interface RawEventRepository extends PagingAndSortingRepository<RawEvent, RawEventId>, RawEventRepositoryCustom {
+    int SLICE_SIZE = 10000;
+    int STREAM_PAGE_SIZE = 50000;
+    // rows per driver round trip, one slice or page
+    String SLICE_FETCH_SIZE = "" + SLICE_SIZE;
+    String STREAM_FETCH_SIZE = "" + STREAM_PAGE_SIZE;
+
     List<RawEvent> findAllById_State(String state, Pageable nextSlice);
 
-}
\ No newline at end of file
+    long countById_State(String state);
+
+    /**
+     * Same slice as {@link #findAllById_State}, read straight into detached DTOs:
+     * no managed entities, nothing for the persistence context to dirty-check or retain.
+     */
+    @Query("select new com.test.logDemo.dto.RawEventDto(e.id.id, e.id.state, e.type, e.host, e.timestamp) " +
+            "from RawEvent e where e.id.state = :state")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = SLICE_FETCH_SIZE))
+    List<RawEventDto> findSliceById_State(@Param("state") String state, Pageable nextSlice);
+
+    /**
+     * Next page of raw events after the key (id, state), ordered by id and state. For the same id
+     * FINISHED sorts before STARTED, so both halves of an event are neighbours. The first predicate
+     * starts a range scan on the primary key and the limit stops it after one page, so the
+     * in-process driver, which materializes whole result sets, holds one page at a time.
+     */
+    @Query("select e from RawEvent e where e.id.id >= :id and (e.id.id > :id or e.id.state > :state) " +
+            "order by e.id.id, e.id.state")
+    @QueryHints({@QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE)})
+    List<RawEvent> findPageAfter(@Param("id") String id, @Param("state") String state,
+                                 Pageable page);
+
+}
@@ -0,0 +1,11 @@
+package com.test.logDemo.dao.repository;
+
+import com.test.logDemo.dao.model.RawEvent;
+
+public interface RawEventRepositoryCustom {
+    /**
+     * Inserts a raw event unless its (id, state) is already in RAW_EVENTS, in one MERGE without the
+     * lookup {@code save} makes for an entity with an assigned id. Returns false if the row was there.
+     */
+    boolean insert(RawEvent rawEvent);
+}
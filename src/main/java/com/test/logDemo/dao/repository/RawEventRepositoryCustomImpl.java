@@ -0,0 +1,28 @@
+package com.test.logDemo.dao.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.test.logDemo.dao.model.RawEvent;
+
+public class RawEventRepositoryCustomImpl implements RawEventRepositoryCustom {
+
+    private static final String INSERT_IF_ABSENT =
+            "MERGE INTO RAW_EVENTS R USING (VALUES (CAST(? AS VARCHAR(256)), CAST(? AS VARCHAR(10)), " +
+            "CAST(? AS VARCHAR(20)), CAST(? AS VARCHAR(10)), CAST(? AS BIGINT))) AS V (ID, STATE, TYPE, HOST, TIMESTAMP) " +
+            "ON (R.ID = V.ID AND R.STATE = V.STATE) " +
+            "WHEN NOT MATCHED THEN INSERT (ID, STATE, TYPE, HOST, TIMESTAMP) VALUES (V.ID, V.STATE, V.TYPE, V.HOST, V.TIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RawEventRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public boolean insert(RawEvent rawEvent) {
+        return jdbcTemplate.update(INSERT_IF_ABSENT, rawEvent.getId().getId(), rawEvent.getId().getState(),
+                rawEvent.getType(), rawEvent.getHost(), rawEvent.getTimestamp()) > 0;
+    }
+}
@@ -0,0 +1,86 @@
+package com.test.logDemo.dao.repository;
+
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Loads RAW_EVENTS straight from a JSON-lines log file: the file is attached as a
+ * read-only HSQLDB TEXT table with one column per line, fields are extracted by the
+ * JSON_FIELD routine inside the database and the rows are copied by a single
+ * INSERT ... SELECT. Of duplicate (id, state) lines only the first one is copied, whole, and
+ * rows already in RAW_EVENTS are skipped. Lines without an id or state, or with a timestamp
+ * that is not a whole number, are ignored, as the line-by-line load skips lines it cannot decode.
+ * <p>
+ * HSQLDB only attaches files outside the database directory when the JVM is started with
+ * the system property {@code textdb.allow_full_path=true}.
+ */
+@Repository
+public class RawEventTextTableRepository {
+    private static final String SOURCE_TABLE = "RAW_EVENTS_SOURCE";
+    private static final int MAX_LINE_LENGTH = 32768;
+    private static Logger LOG = LoggerFactory.getLogger(RawEventTextTableRepository.class);
+
+    private static final String CREATE_JSON_FIELD_FUNCTION =
+            "CREATE FUNCTION JSON_FIELD(LINE VARCHAR(" + MAX_LINE_LENGTH + "), NAME VARCHAR(64)) " +
+            "RETURNS VARCHAR(" + MAX_LINE_LENGTH + ") LANGUAGE JAVA DETERMINISTIC NO SQL " +
+            "EXTERNAL NAME 'CLASSPATH:com.test.logDemo.dao.function.JsonLineFunctions.field'";
+
+    private static final String CREATE_JSON_BIGINT_FUNCTION =
+            "CREATE FUNCTION JSON_BIGINT(LINE VARCHAR(" + MAX_LINE_LENGTH + "), NAME VARCHAR(64)) " +
+            "RETURNS BIGINT LANGUAGE JAVA DETERMINISTIC NO SQL " +
+            "EXTERNAL NAME 'CLASSPATH:com.test.logDemo.dao.function.JsonLineFunctions.longField'";
+
+    // LINE_NO numbers the lines in file order, F keeps the first usable line of each key
+    private static final String INSERT_FROM_SOURCE =
+            "INSERT INTO RAW_EVENTS (ID, STATE, TYPE, HOST, TIMESTAMP) " +
+            "WITH S AS (" +
+            "  SELECT ROWNUM() AS LINE_NO, JSON_FIELD(LINE, 'id') AS ID, JSON_FIELD(LINE, 'state') AS STATE," +
+            "    JSON_FIELD(LINE, 'type') AS TYPE, JSON_FIELD(LINE, 'host') AS HOST," +
+            "    JSON_FIELD(LINE, 'timestamp') AS TIMESTAMP_TEXT, JSON_BIGINT(LINE, 'timestamp') AS TIMESTAMP" +
+            "  FROM " + SOURCE_TABLE + "), " +
+            "F AS (" +
+            "  SELECT MIN(LINE_NO) AS LINE_NO FROM S" +
+            "  WHERE ID IS NOT NULL AND STATE IS NOT NULL AND (TIMESTAMP IS NOT NULL OR TIMESTAMP_TEXT IS NULL)" +
+            "  GROUP BY ID, STATE) " +
+            "SELECT S.ID, S.STATE, S.TYPE, S.HOST, S.TIMESTAMP FROM S JOIN F ON S.LINE_NO = F.LINE_NO " +
+            "WHERE NOT EXISTS (SELECT 1 FROM RAW_EVENTS R WHERE R.ID = S.ID AND R.STATE = S.STATE)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RawEventTextTableRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int loadFromFile(String filePath) {
+        createFunction("JSON_FIELD", CREATE_JSON_FIELD_FUNCTION);
+        createFunction("JSON_BIGINT", CREATE_JSON_BIGINT_FUNCTION);
+        jdbcTemplate.execute("DROP TABLE " + SOURCE_TABLE + " IF EXISTS");
+        jdbcTemplate.execute("CREATE TEXT TABLE " + SOURCE_TABLE + " (LINE VARCHAR(" + MAX_LINE_LENGTH + "))");
+        try {
+            jdbcTemplate.execute("SET TABLE " + SOURCE_TABLE + " SOURCE '" + sourceDescriptor(filePath) + "' DESC");
+            int loaded = jdbcTemplate.update(INSERT_FROM_SOURCE);
+            LOG.info(String.format("Loaded %d raw events from text table source %s", loaded, filePath));
+            return loaded;
+        } finally {
+            jdbcTemplate.execute("DROP TABLE " + SOURCE_TABLE + " IF EXISTS");
+        }
+    }
+
+    private void createFunction(String name, String ddl) {
+        Integer routines = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.ROUTINES WHERE ROUTINE_NAME = ?", Integer.class, name);
+        if (routines == null || routines == 0) {
+            jdbcTemplate.execute(ddl);
+        }
+    }
+
+    // whole line as the only field: \u0001 never occurs in the log
+    private static String sourceDescriptor(String filePath) {
+        String path = Paths.get(filePath).toAbsolutePath().toString().replace("'", "''");
+        return path + ";fs=\\u0001;encoding=UTF-8";
+    }
+}
@@ -9,6 +9,18 @@ public class RawEventDto {
     private String host;
     private Long timestamp;
 
+    public RawEventDto() {
+
+    }
+
+    public RawEventDto(String id, String state, String type, String host, Long timestamp) {
+        this.id = id;
+        this.state = state;
+        this.type = type;
+        this.host = host;
+        this.timestamp = timestamp;
+    }
+
     public String getId() {
         return id;
     }
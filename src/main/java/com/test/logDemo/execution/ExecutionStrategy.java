@@ -0,0 +1,16 @@
+package com.test.logDemo.execution;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Where slice processing runs: repository calls go to the I/O executor,
+ * pairing of finished/started events goes to the CPU executor.
+ */
+public interface ExecutionStrategy {
+    ExecutorService cpuExecutor();
+    ExecutorService ioExecutor();
+    int ioParallelism();
+    /** Slices read, paired and saved at the same time. */
+    int maxInFlight();
+    void shutdown();
+}
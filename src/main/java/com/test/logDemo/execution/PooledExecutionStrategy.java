@@ -0,0 +1,78 @@
+package com.test.logDemo.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PooledExecutionStrategy implements ExecutionStrategy {
+    private static final int SHUTDOWN_TIMEOUT = 30;
+    private static Logger LOG = LoggerFactory.getLogger(PooledExecutionStrategy.class);
+
+    private final ExecutorService cpuExecutor;
+    private final ExecutorService ioExecutor;
+    private final int ioThreads;
+
+    public PooledExecutionStrategy(int cpuThreads, int ioThreads) {
+        this(Executors.newFixedThreadPool(cpuThreads, namedThreadFactory("pairing")),
+                Executors.newFixedThreadPool(ioThreads, namedThreadFactory("repository")), ioThreads);
+        LOG.info(String.format("Pooled execution: %d pairing threads, %d repository threads", cpuThreads, ioThreads));
+    }
+
+    protected PooledExecutionStrategy(ExecutorService cpuExecutor, ExecutorService ioExecutor, int ioThreads) {
+        this.cpuExecutor = cpuExecutor;
+        this.ioExecutor = ioExecutor;
+        this.ioThreads = ioThreads;
+    }
+
+    @Override
+    public ExecutorService cpuExecutor() {
+        return cpuExecutor;
+    }
+
+    @Override
+    public ExecutorService ioExecutor() {
+        return ioExecutor;
+    }
+
+    @Override
+    public int ioParallelism() {
+        return ioThreads;
+    }
+
+    @Override
+    public int maxInFlight() {
+        return ioThreads;
+    }
+
+    @Override
+    public void shutdown() {
+        ioExecutor.shutdown();
+        cpuExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                ioExecutor.shutdownNow();
+            }
+            if (!cpuExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                cpuExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            ioExecutor.shutdownNow();
+            cpuExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
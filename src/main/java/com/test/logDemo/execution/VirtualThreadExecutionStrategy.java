@@ -0,0 +1,53 @@
+package com.test.logDemo.execution;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One virtual thread per slice for the repository side, a core-sized pool for pairing.
+ * Up to inFlight slices are processed at the same time, independently of ioThreads, which
+ * still sizes the connection pool. Virtual threads are looked up reflectively so the build
+ * stays on Java 8; on older runtimes this falls back to a fixed repository pool.
+ */
+public class VirtualThreadExecutionStrategy extends PooledExecutionStrategy {
+    private static Logger LOG = LoggerFactory.getLogger(VirtualThreadExecutionStrategy.class);
+
+    private final int inFlight;
+
+    public VirtualThreadExecutionStrategy(int cpuThreads, int ioThreads, int inFlight) {
+        this(Executors.newFixedThreadPool(cpuThreads, namedThreadFactory("pairing")),
+                virtualThreadPerTaskExecutor(), ioThreads, inFlight);
+    }
+
+    private VirtualThreadExecutionStrategy(ExecutorService cpuExecutor, ExecutorService virtualExecutor,
+                                           int ioThreads, int inFlight) {
+        super(cpuExecutor, virtualExecutor != null ? virtualExecutor
+                : Executors.newFixedThreadPool(ioThreads, namedThreadFactory("repository")), ioThreads);
+        this.inFlight = virtualExecutor != null ? inFlight : ioThreads;
+        if (virtualExecutor != null) {
+            LOG.info(String.format("Virtual thread execution: one virtual thread per slice, %d slices in flight",
+                    inFlight));
+        } else {
+            LOG.warn(String.format("Virtual threads not available on Java %s, using %d repository threads",
+                    System.getProperty("java.version"), ioThreads));
+        }
+    }
+
+    @Override
+    public int maxInFlight() {
+        return inFlight;
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.test.logDemo.ingest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dto.RawEventDto;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+import com.test.logDemo.service.AlertQueryService;
+import com.test.logDemo.service.DataService;
+import com.test.logDemo.service.IngestionService;
+
+/**
+ * Embedded HTTP endpoint for agents streaming events: {@code POST /events} with an NDJSON body,
+ * plain or chunked. The body is decoded line by line while it arrives, with the same decoder as
+ * file loading, and handed to the ingestion queue. While the queue is full reading stops; when it
+ * stays full past the offer timeout the request ends with 429 and the number of lines accepted,
+ * the client resends from there.
+ * <p>
+ * {@code GET /alerts?host=&type=&alerts=true&last=60&limit=10} returns the longest events, optionally for
+ * one host and/or type, alerts only and started in the last N minutes, from the {@link AlertQueryService} cache.
+ * {@code GET /metrics} reports connection pool waits, the ingestion queue depth and the number of
+ * accepted events that could not be saved.
+ */
+public class NdjsonIngestionServer {
+    private static final String EVENTS_PATH = "/events";
+    private static final String ALERTS_PATH = "/alerts";
+    private static final String METRICS_PATH = "/metrics";
+    private static final int DEFAULT_LIMIT = 10;
+    private static final int BACKLOG = 64;
+    private static final int STOP_DELAY = 1;
+    private static Logger LOG = LoggerFactory.getLogger(NdjsonIngestionServer.class);
+
+    private final DataService dataService;
+    private final IngestionService ingestionService;
+    private final AlertQueryService alertQueryService;
+    private final ConnectionWaitMetrics connectionWaitMetrics;
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private final int threads;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public NdjsonIngestionServer(DataService dataService, IngestionService ingestionService,
+                                 AlertQueryService alertQueryService, ConnectionWaitMetrics connectionWaitMetrics,
+                                 ObjectMapper objectMapper, int port, int threads) {
+        this.dataService = dataService;
+        this.ingestionService = ingestionService;
+        this.alertQueryService = alertQueryService;
+        this.connectionWaitMetrics = connectionWaitMetrics;
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public void start() throws IOException {
+        ingestionService.start();
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext(EVENTS_PATH, this::handleEvents);
+        server.createContext(ALERTS_PATH, this::handleAlerts);
+        server.createContext(METRICS_PATH, this::handleMetrics);
+        server.setExecutor(executor);
+        server.start();
+        LOG.info(String.format("NDJSON ingestion listening on port %d, POST %s, GET %s", port, EVENTS_PATH, ALERTS_PATH));
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(STOP_DELAY);
+            executor.shutdown();
+        }
+        ingestionService.stop();
+    }
+
+    private void handleEvents(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"POST only\"}");
+                return;
+            }
+            long accepted = 0;
+            long invalid = 0;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    RawEventDto rawEventDto = decode(line);
+                    if (rawEventDto == null) {
+                        invalid++;
+                        continue;
+                    }
+                    if (!ingestionService.offer(rawEventDto)) {
+                        exchange.getResponseHeaders().set("Retry-After", "1");
+                        respond(exchange, 429, result(accepted, invalid));
+                        return;
+                    }
+                    accepted++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, result(accepted, invalid));
+                return;
+            }
+            respond(exchange, 202, result(accepted, invalid));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleAlerts(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"GET only\"}");
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+            int limit;
+            try {
+                limit = parameters.containsKey("limit") ? Integer.parseInt(parameters.get("limit")) : DEFAULT_LIMIT;
+            } catch (NumberFormatException e) {
+                limit = -1;
+            }
+            if (limit <= 0) {
+                respond(exchange, 400, "{\"error\":\"limit must be a positive number\"}");
+                return;
+            }
+            Long since = null;
+            if (parameters.containsKey("last")) {
+                long minutes;
+                try {
+                    minutes = Long.parseLong(parameters.get("last"));
+                } catch (NumberFormatException e) {
+                    minutes = -1;
+                }
+                if (minutes <= 0) {
+                    respond(exchange, 400, "{\"error\":\"last must be a positive number of minutes\"}");
+                    return;
+                }
+                since = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes);
+            }
+            List<Event> events = alertQueryService.findTopByDuration(parameters.get("host"), parameters.get("type"),
+                    Boolean.parseBoolean(parameters.get("alerts")), since, limit);
+            respond(exchange, 200, objectMapper.writeValueAsString(events));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"GET only\"}");
+                return;
+            }
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("connections", connectionWaitMetrics.snapshot());
+            metrics.put("backlog", ingestionService.backlog());
+            metrics.put("failed", ingestionService.failed());
+            respond(exchange, 200, objectMapper.writeValueAsString(metrics));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> parameters(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    private RawEventDto decode(String line) {
+        try {
+            RawEventDto rawEventDto = dataService.decode(line);
+            return rawEventDto.getId() == null || rawEventDto.getState() == null ? null : rawEventDto;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String result(long accepted, long invalid) {
+        return String.format("{\"accepted\":%d,\"invalid\":%d}", accepted, invalid);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.test.logDemo.loadtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+import com.test.logDemo.util.State;
+
+/**
+ * Writes a reproducible JSON-lines event log in the format of log.txt. Memory is bounded by the
+ * out-of-order window: the second half of every event waits in a queue until its line number comes up,
+ * so logs of 1e9 lines are written in one streaming pass. Halves still waiting when the requested number
+ * of lines is reached are written at the end, so the log can be one line longer but never splits an event.
+ */
+public class EventLogGenerator {
+    private final GeneratorSettings settings;
+    private final Random random;
+    private final LongSupplier durations;
+    private final ZipfSampler typeSampler;
+    private final ZipfSampler hostSampler;
+
+    public EventLogGenerator(GeneratorSettings settings) {
+        this.settings = settings;
+        this.random = new Random(settings.getSeed());
+        this.durations = durations(settings.getDuration(), random);
+        this.typeSampler = new ZipfSampler(settings.getTypes(), settings.getSkew());
+        this.hostSampler = new ZipfSampler(settings.getHosts(), settings.getSkew());
+    }
+
+    /** Writes the log and returns the number of lines written. */
+    public long generate(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return generate(writer);
+        }
+    }
+
+    long generate(Writer writer) throws IOException {
+        PriorityQueue<PendingLine> pending = new PriorityQueue<>();
+        long written = 0;
+        long event = 0;
+        while (written < settings.getLines()) {
+            PendingLine due = pending.peek();
+            if (due != null && (due.lineNumber <= written || written + pending.size() >= settings.getLines())) {
+                writeLine(writer, pending.poll().line);
+                written++;
+                continue;
+            }
+            written += writeEvent(writer, event++, written, pending);
+        }
+        while (!pending.isEmpty()) {
+            writeLine(writer, pending.poll().line);
+            written++;
+        }
+        return written;
+    }
+
+    private int writeEvent(Writer writer, long event, long lineNumber, PriorityQueue<PendingLine> pending) throws IOException {
+        String id = "ev" + Long.toString(settings.getIds() > 0 ? event % settings.getIds() : event, 36);
+        long started = settings.getStart() + event;
+        long finished = started + durations.getAsLong();
+        String type = null;
+        String host = null;
+        if (random.nextDouble() < settings.getTypedRatio()) {
+            int typeRank = typeSampler.sample(random);
+            type = typeRank == 0 ? "APPLICATION_LOG" : "TYPE_" + typeRank;
+            host = Integer.toString(10000 + hostSampler.sample(random));
+        }
+        String startedLine = line(id, State.STARTED, type, host, started);
+        String finishedLine = line(id, State.FINISHED, type, host, finished);
+        if (random.nextDouble() < settings.getOrphans()) {
+            writeLine(writer, random.nextBoolean() ? startedLine : finishedLine);
+            return 1;
+        }
+        boolean finishedFirst = settings.getWindow() > 0 && random.nextBoolean();
+        writeLine(writer, finishedFirst ? finishedLine : startedLine);
+        long secondHalf = lineNumber + 1 + (settings.getWindow() > 0 ? random.nextInt(settings.getWindow()) : 0);
+        pending.add(new PendingLine(secondHalf, event, finishedFirst ? startedLine : finishedLine));
+        return 1;
+    }
+
+    private static String line(String id, State state, String type, String host, long timestamp) {
+        StringBuilder line = new StringBuilder(112)
+                .append("{\"id\":\"").append(id).append("\", \"state\":\"").append(state.get()).append('"');
+        if (type != null) {
+            line.append(", \"type\":\"").append(type).append("\", \"host\":\"").append(host).append('"');
+        }
+        return line.append(", \"timestamp\":").append(timestamp).append('}').toString();
+    }
+
+    private static void writeLine(Writer writer, String line) throws IOException {
+        writer.write(line);
+        writer.write('\n');
+    }
+
+    static LongSupplier durations(String distribution, Random random) {
+        String[] parts = distribution.split(":");
+        switch (parts[0]) {
+            case "exp":
+                double mean = Double.parseDouble(parts[1]);
+                return () -> Math.round(-mean * Math.log(1 - random.nextDouble()));
+            case "uniform":
+                long min = Long.parseLong(parts[1]);
+                long max = Long.parseLong(parts[2]);
+                return () -> min + (long) (random.nextDouble() * (max - min + 1));
+            case "fixed":
+                long fixed = Long.parseLong(parts[1]);
+                return () -> fixed;
+            default:
+                throw new IllegalArgumentException("Unknown duration distribution: " + distribution);
+        }
+    }
+
+    private static final class PendingLine implements Comparable<PendingLine> {
+        private final long lineNumber;
+        private final long event;
+        private final String line;
+
+        PendingLine(long lineNumber, long event, String line) {
+            this.lineNumber = lineNumber;
+            this.event = event;
+            this.line = line;
+        }
+
+        @Override
+        public int compareTo(PendingLine other) {
+            int byLine = Long.compare(lineNumber, other.lineNumber);
+            return byLine != 0 ? byLine : Long.compare(event, other.event);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.test.logDemo.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shape of a generated event log, read from {@code --name=value} command line options:
+ * <pre>
+ * --lines=1000000        lines to write
+ * --ids=0                distinct ids, fewer than events replays ids (0 = one id per event)
+ * --window=1000          lines between the two halves of an event, up to about this many, either half first
+ * --orphans=0.01         share of events with only a STARTED or only a FINISHED line
+ * --duration=exp:3       duration in ms: exp:MEAN, uniform:MIN:MAX or fixed:N
+ * --typed-ratio=0.5      share of events carrying type and host
+ * --types=4 --hosts=100  distinct types and hosts, drawn with Zipf exponent --skew=1.0 (0 = uniform)
+ * --seed=42 --start=1491377495212
+ * </pre>
+ */
+public class GeneratorSettings {
+    private final long lines;
+    private final long ids;
+    private final int window;
+    private final double orphans;
+    private final String duration;
+    private final double typedRatio;
+    private final int types;
+    private final int hosts;
+    private final double skew;
+    private final long seed;
+    private final long start;
+
+    private GeneratorSettings(Map<String, String> options) {
+        this.lines = Long.parseLong(options.getOrDefault("lines", "1000000"));
+        this.ids = Long.parseLong(options.getOrDefault("ids", "0"));
+        this.window = Integer.parseInt(options.getOrDefault("window", "1000"));
+        this.orphans = Double.parseDouble(options.getOrDefault("orphans", "0.01"));
+        this.duration = options.getOrDefault("duration", "exp:3");
+        this.typedRatio = Double.parseDouble(options.getOrDefault("typed-ratio", "0.5"));
+        this.types = Integer.parseInt(options.getOrDefault("types", "4"));
+        this.hosts = Integer.parseInt(options.getOrDefault("hosts", "100"));
+        this.skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.start = Long.parseLong(options.getOrDefault("start", "1491377495212"));
+        if (lines < 0 || ids < 0 || window < 0 || types < 1 || hosts < 1) {
+            throw new IllegalArgumentException("lines, ids and window must not be negative, types and hosts must be positive");
+        }
+        if (orphans < 0 || orphans > 1 || typedRatio < 0 || typedRatio > 1) {
+            throw new IllegalArgumentException("orphans and typed-ratio must be between 0 and 1");
+        }
+    }
+
+    /** Reads the {@code --name=value} options, other arguments are ignored. */
+    public static GeneratorSettings of(String... args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--") && separator > 2) {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return new GeneratorSettings(options);
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getIds() {
+        return ids;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    public double getOrphans() {
+        return orphans;
+    }
+
+    public String getDuration() {
+        return duration;
+    }
+
+    public double getTypedRatio() {
+        return typedRatio;
+    }
+
+    public int getTypes() {
+        return types;
+    }
+
+    public int getHosts() {
+        return hosts;
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getStart() {
+        return start;
+    }
+}
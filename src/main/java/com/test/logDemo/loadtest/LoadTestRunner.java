@@ -0,0 +1,201 @@
+package com.test.logDemo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.logDemo.dao.repository.EventRepository;
+import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+import com.test.logDemo.service.DataService;
+import com.test.logDemo.service.EventService;
+
+/**
+ * Runs the whole pipeline against a log, generated first when asked to, and writes a JSON report
+ * with throughput of each phase, peak RSS, GC time and the size of the database files.
+ */
+@Component
+public class LoadTestRunner {
+    private static Logger LOG = LoggerFactory.getLogger(LoadTestRunner.class);
+    private static final String[] DATABASE_FILE_SUFFIXES = {".data", ".script", ".log", ".properties", ".backup", ".lobs"};
+
+    private final DataService dataService;
+    private final EventService eventService;
+    private final RawEventRepository rawEventRepository;
+    private final EventRepository eventRepository;
+    private final DataSourceProperties dataSourceProperties;
+    private final ConnectionWaitMetrics connectionWaitMetrics;
+    private final ObjectMapper objectMapper;
+    private final Map<String, String> configuration = new LinkedHashMap<>();
+
+    public LoadTestRunner(DataService dataService, EventService eventService, RawEventRepository rawEventRepository,
+                          EventRepository eventRepository, DataSourceProperties dataSourceProperties,
+                          ConnectionWaitMetrics connectionWaitMetrics, ObjectMapper objectMapper,
+                          @Value("${logdemo.execution.mode:pooled}") String executionMode,
+                          @Value("${logdemo.ingestion.mode:jpa}") String ingestionMode,
+                          @Value("${logdemo.ingestion.bulk-load:false}") String bulkLoad,
+                          @Value("${logdemo.pairing.engine:slice}") String pairingEngine) {
+        this.dataService = dataService;
+        this.eventService = eventService;
+        this.rawEventRepository = rawEventRepository;
+        this.eventRepository = eventRepository;
+        this.dataSourceProperties = dataSourceProperties;
+        this.connectionWaitMetrics = connectionWaitMetrics;
+        this.objectMapper = objectMapper;
+        configuration.put("executionMode", executionMode);
+        configuration.put("ingestionMode", ingestionMode);
+        configuration.put("bulkLoad", bulkLoad);
+        configuration.put("pairingEngine", pairingEngine);
+    }
+
+    /** Writes a log only, returns the number of lines. */
+    public long generate(Path file, GeneratorSettings settings) throws IOException {
+        long started = System.nanoTime();
+        long lines = new EventLogGenerator(settings).generate(file);
+        LOG.info(String.format("Generated %d lines into %s in %d ms", lines, file, millisSince(started)));
+        return lines;
+    }
+
+    /**
+     * Generates the log when it does not exist (or --generate=true), loads and pairs it with the
+     * configured engines and writes the report to --report (default loadtest-report.json).
+     */
+    public Map<String, Object> run(Path file, int sliceSize, String... args) throws IOException {
+        GeneratorSettings settings = GeneratorSettings.of(args);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("file", file.toAbsolutePath().toString());
+        report.put("configuration", configuration);
+        long gcMillisBefore = gcMillis();
+
+        if (!Files.exists(file) || hasOption(args, "--generate=true")) {
+            long started = System.nanoTime();
+            long lines = generate(file, settings);
+            report.put("generate", phase(lines, millisSince(started)));
+        }
+        report.put("fileBytes", Files.size(file));
+
+        // rows this run added, the database may already hold earlier loads
+        long rawEventsBefore = rawEventRepository.count();
+        long started = System.nanoTime();
+        dataService.loadFromFile(file.toString());
+        report.put("load", phase(rawEventRepository.count() - rawEventsBefore, millisSince(started)));
+
+        started = System.nanoTime();
+        eventService.addAlertFlagsToAll(sliceSize);
+        report.put("pairing", phase(eventRepository.count(), millisSince(started)));
+
+        report.put("peakRssBytes", peakRssBytes());
+        report.put("peakHeapBytes", peakHeapBytes());
+        report.put("gcMillis", gcMillis() - gcMillisBefore);
+        report.put("databaseBytes", databaseBytes());
+        report.put("connections", connectionWaitMetrics.snapshot());
+
+        String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+        Path reportFile = Paths.get(option(args, "--report=", "loadtest-report.json"));
+        Files.write(reportFile, json.getBytes(StandardCharsets.UTF_8));
+        LOG.info("Load test report written to " + reportFile.toAbsolutePath() + ": " + json);
+        return report;
+    }
+
+    private static Map<String, Object> phase(long rows, long millis) {
+        Map<String, Object> phase = new LinkedHashMap<>();
+        phase.put("rows", rows);
+        phase.put("millis", millis);
+        phase.put("rowsPerSecond", millis == 0 ? rows : rows * 1000 / millis);
+        return phase;
+    }
+
+    // VmHWM is the resident set high-water mark, only available on Linux
+    private static long peakRssBytes() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn("Could not read peak RSS: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        for (GarbageCollectorMXBean collector : collectors) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    // file: databases only, mem: databases have no files
+    private long databaseBytes() {
+        String url = dataSourceProperties.determineUrl();
+        String prefix = "jdbc:hsqldb:file:";
+        if (url == null || !url.startsWith(prefix)) {
+            return 0;
+        }
+        String path = url.substring(prefix.length()).split(";")[0].trim();
+        long bytes = 0;
+        for (String suffix : DATABASE_FILE_SUFFIXES) {
+            File file = new File(path + suffix);
+            if (file.isFile()) {
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    private static boolean hasOption(String[] args, String option) {
+        for (String arg : args) {
+            if (arg.equals(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String option(String[] args, String prefix, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+}
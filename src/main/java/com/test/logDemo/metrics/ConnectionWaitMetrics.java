@@ -0,0 +1,72 @@
+package com.test.logDemo.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Records how long workers wait for a pooled connection, how long they hold it and how often
+ * the wait times out, so connection starvation shows up as numbers instead of slow slices.
+ */
+public class ConnectionWaitMetrics implements MetricsTrackerFactory {
+    private static Logger LOG = LoggerFactory.getLogger(ConnectionWaitMetrics.class);
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder usageMillis = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitions.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.add(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+                LOG.warn(String.format("Connection wait timed out in pool %s, %d threads waiting",
+                        poolName, poolStats.getPendingThreads()));
+            }
+        };
+    }
+
+    public Map<String, Object> snapshot() {
+        long count = acquisitions.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("acquisitions", count);
+        snapshot.put("meanWaitMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(acquireNanos.sum() / count));
+        snapshot.put("maxWaitMicros", TimeUnit.NANOSECONDS.toMicros(maxAcquireNanos.get()));
+        snapshot.put("meanUsageMillis", count == 0 ? 0 : usageMillis.sum() / count);
+        snapshot.put("timeouts", timeouts.sum());
+        PoolStats stats = poolStats;
+        if (stats != null) {
+            snapshot.put("active", stats.getActiveConnections());
+            snapshot.put("idle", stats.getIdleConnections());
+            snapshot.put("max", stats.getMaxConnections());
+            snapshot.put("waiting", stats.getPendingThreads());
+        }
+        return snapshot;
+    }
+}
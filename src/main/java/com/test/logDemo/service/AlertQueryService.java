@@ -0,0 +1,12 @@
+package com.test.logDemo.service;
+
+import java.util.List;
+
+import com.test.logDemo.dao.model.Event;
+
+public interface AlertQueryService {
+    List<Event> findTopByDuration(String host, String type, boolean alertsOnly, int limit);
+    List<Event> findTopByDuration(String host, String type, boolean alertsOnly, Long since, int limit);
+    void onEventsSaved(List<Event> events);
+    void invalidate();
+}
@@ -0,0 +1,165 @@
+package com.test.logDemo.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dao.repository.EventQueryRepository;
+
+/**
+ * Dashboard reads ("longest events / alerts for host X and type Y") served from memory.
+ * Every (host, type, alertsOnly) combination asked for, with host and type optional, holds the
+ * top-K events by duration, loaded from EVENTS on the first query and then kept current by the
+ * writer through {@link #onEventsSaved}. Combinations nobody asked for are not tracked; limits
+ * above K go to the database. A time window ("in the last N") is applied to the cached top-K and
+ * goes to the database only when fewer than the limit remain and EVENTS has more rows than K.
+ * <p>
+ * Updates run inside {@code computeIfPresent} on their key, so an update for a combination that
+ * is being loaded waits for the load and is applied to the loaded entry instead of being lost.
+ */
+@Service
+public class AlertQueryServiceImpl implements AlertQueryService {
+    private static final Comparator<Event> LONGEST_FIRST = Comparator
+            .comparing(Event::getDuration, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Event::getId);
+
+    private final EventQueryRepository eventQueryRepository;
+    private final int topK;
+    private final Map<Key, TopEvents> cache = new ConcurrentHashMap<>();
+
+    public AlertQueryServiceImpl(EventQueryRepository eventQueryRepository,
+                                 @Value("${logdemo.alerts.cache.top-k:1000}") int topK) {
+        this.eventQueryRepository = eventQueryRepository;
+        this.topK = topK;
+    }
+
+    @Override
+    public List<Event> findTopByDuration(String host, String type, boolean alertsOnly, int limit) {
+        return findTopByDuration(host, type, alertsOnly, null, limit);
+    }
+
+    @Override
+    public List<Event> findTopByDuration(String host, String type, boolean alertsOnly, Long since, int limit) {
+        if (limit > topK) {
+            return eventQueryRepository.findTopByDuration(host, type, alertsOnly, since, limit);
+        }
+        TopEvents topEvents = cache.computeIfAbsent(new Key(host, type, alertsOnly), key ->
+                new TopEvents(eventQueryRepository.findTopByDuration(key.host, key.type, key.alertsOnly, topK)));
+        List<Event> first = topEvents.first(limit, since);
+        if (first == null) {
+            return eventQueryRepository.findTopByDuration(host, type, alertsOnly, since, limit);
+        }
+        return first;
+    }
+
+    @Override
+    public void onEventsSaved(List<Event> events) {
+        for (Event event : events) {
+            boolean alert = Boolean.TRUE.equals(event.getAlert());
+            for (String host : new String[]{event.getHost(), null}) {
+                for (String type : new String[]{event.getType(), null}) {
+                    update(new Key(host, type, false), event, true);
+                    update(new Key(host, type, true), event, alert);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        cache.clear();
+    }
+
+    private void update(Key key, Event event, boolean matches) {
+        cache.computeIfPresent(key, (k, topEvents) -> topEvents.update(event, matches) ? topEvents : null);
+    }
+
+    private static final class Key {
+        private final String host;
+        private final String type;
+        private final boolean alertsOnly;
+
+        private Key(String host, String type, boolean alertsOnly) {
+            this.host = host;
+            this.type = type;
+            this.alertsOnly = alertsOnly;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return alertsOnly == key.alertsOnly &&
+                    Objects.equals(host, key.host) &&
+                    Objects.equals(type, key.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, type, alertsOnly);
+        }
+    }
+
+    /**
+     * Top-K events of one combination. When the table held more than K matching rows, anything
+     * that would sort below the cut-off is dropped, rows the cache never saw could be ahead of it;
+     * and an event leaving the top-K makes the entry unreliable, it is reloaded on the next query.
+     */
+    private final class TopEvents {
+        private final TreeSet<Event> events = new TreeSet<>(LONGEST_FIRST);
+        private final Map<String, Event> byId = new HashMap<>();
+        private final boolean complete;
+
+        private TopEvents(List<Event> loaded) {
+            for (Event event : loaded) {
+                events.add(event);
+                byId.put(event.getId(), event);
+            }
+            this.complete = loaded.size() < topK;
+        }
+
+        /**
+         * The longest events starting at or after since, or null when fewer than the limit are
+         * cached and rows below the cut-off could make up the rest.
+         */
+        private synchronized List<Event> first(int limit, Long since) {
+            List<Event> first = new ArrayList<>(Math.min(limit, events.size()));
+            Iterator<Event> iterator = events.iterator();
+            while (iterator.hasNext() && first.size() < limit) {
+                Event event = iterator.next();
+                if (since == null || event.getStartTimestamp() != null && event.getStartTimestamp() >= since) {
+                    first.add(event);
+                }
+            }
+            return first.size() < limit && since != null && !complete ? null : first;
+        }
+
+        private synchronized boolean update(Event event, boolean matches) {
+            Event previous = byId.remove(event.getId());
+            if (previous != null) {
+                events.remove(previous);
+            }
+            boolean belowCutOff = !complete && !events.isEmpty() && LONGEST_FIRST.compare(event, events.last()) > 0;
+            if (!matches || belowCutOff) {
+                return complete || previous == null;
+            }
+            events.add(event);
+            byId.put(event.getId(), event);
+            if (events.size() > topK) {
+                byId.remove(events.pollLast().getId());
+            }
+            return true;
+        }
+    }
+}
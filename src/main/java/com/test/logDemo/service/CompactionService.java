@@ -0,0 +1,5 @@
+package com.test.logDemo.service;
+
+public interface CompactionService {
+    void compact();
+}
@@ -0,0 +1,97 @@
+package com.test.logDemo.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.test.logDemo.dao.repository.CompactionRepository;
+
+/**
+ * Keeps the database working set bounded: raw rows of paired ids are deleted in batches and events older
+ * than logdemo.compaction.roll-up-after-days are moved into EVENT_AGGREGATES in one transaction, both
+ * skipped while a pairing run still reads RAW_EVENTS and writes EVENTS (no run starts until they are done).
+ * Events past logdemo.retention.days are deleted, and CHECKPOINT DEFRAG runs once the lost space in the
+ * .data file passes logdemo.compaction.defrag-wasted-percent.
+ */
+@Service
+public class CompactionServiceImpl implements CompactionService {
+    private static Logger LOG = LoggerFactory.getLogger(CompactionServiceImpl.class);
+
+    private final CompactionRepository compactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EventService eventService;
+    private final AlertQueryService alertQueryService;
+    private final EventRetentionService eventRetentionService;
+    private final int batchSize;
+    private final int rollUpAfterDays;
+    private final int defragWastedPercent;
+
+    public CompactionServiceImpl(CompactionRepository compactionRepository, PlatformTransactionManager transactionManager,
+                                 EventService eventService, AlertQueryService alertQueryService,
+                                 EventRetentionService eventRetentionService,
+                                 @Value("${logdemo.compaction.batch-size:10000}") int batchSize,
+                                 @Value("${logdemo.compaction.roll-up-after-days:30}") int rollUpAfterDays,
+                                 @Value("${logdemo.compaction.defrag-wasted-percent:30}") int defragWastedPercent) {
+        this.compactionRepository = compactionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventService = eventService;
+        this.alertQueryService = alertQueryService;
+        this.eventRetentionService = eventRetentionService;
+        this.batchSize = batchSize;
+        this.rollUpAfterDays = rollUpAfterDays;
+        this.defragWastedPercent = defragWastedPercent;
+    }
+
+    @Override
+    public synchronized void compact() {
+        LOG.info("Compaction started");
+        if (!eventService.runUnlessPairing(() -> {
+            deletePairedRawEvents();
+            rollUpEvents();
+        })) {
+            LOG.info("Pairing in progress, raw events and events kept");
+        }
+        eventRetentionService.applyRetention();
+        defragIfWasted();
+        LOG.info("Compaction finished");
+    }
+
+    private void deletePairedRawEvents() {
+        long deleted = 0;
+        int batch;
+        do {
+            batch = compactionRepository.deletePairedRawEvents(batchSize);
+            deleted += batch;
+        } while (batch == batchSize);
+        LOG.info("Deleted paired raw events: " + deleted);
+    }
+
+    private void rollUpEvents() {
+        if (rollUpAfterDays <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(rollUpAfterDays);
+        compactionRepository.createAggregates();
+        Integer rolledUp = transactionTemplate.execute(status -> {
+            compactionRepository.rollUpEventsBefore(cutoff);
+            return compactionRepository.deleteEventsBefore(cutoff);
+        });
+        if (rolledUp != null && rolledUp > 0) {
+            alertQueryService.invalidate();
+            LOG.info(String.format("Rolled %d events older than %d days into aggregates", rolledUp, rollUpAfterDays));
+        }
+    }
+
+    private void defragIfWasted() {
+        double wasted = compactionRepository.findWastedSpaceRatio();
+        if (wasted * 100 >= defragWastedPercent) {
+            LOG.info(String.format("Defragmenting data file, %.0f%% lost", wasted * 100));
+            compactionRepository.checkpointDefrag();
+        }
+    }
+}
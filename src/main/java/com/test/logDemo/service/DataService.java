@@ -1,8 +1,14 @@
 package com.test.logDemo.service;
 
+import java.io.IOException;
+
 import org.springframework.data.domain.Pageable;
 
+import com.test.logDemo.dto.RawEventDto;
+
 public interface DataService {
     Pageable getSliceSortedById(int page, int size);
     void loadFromFile(String filePath);
+    RawEventDto decode(String line) throws IOException;
+    boolean save(RawEventDto rawEventDto);
 }
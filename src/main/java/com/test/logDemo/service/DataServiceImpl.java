@@ -3,10 +3,13 @@ package com.test.logDemo.service;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -14,9 +17,12 @@ import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.test.logDemo.dao.model.RawEvent;
+import com.test.logDemo.dao.repository.RawEventBulkRepository;
 import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.dao.repository.RawEventTextTableRepository;
 import com.test.logDemo.dto.RawEventDto;
 import com.test.logDemo.mapper.RawEventMapper;
+import com.test.logDemo.util.IngestionMode;
 
 @Service
 public class DataServiceImpl implements DataService {
@@ -24,10 +30,31 @@ public class DataServiceImpl implements DataService {
 
     private final ObjectMapper objectMapper;
     private final RawEventRepository rawEventRepository;
+    private final RawEventTextTableRepository rawEventTextTableRepository;
+    private final RawEventBulkRepository rawEventBulkRepository;
+    private final DeduplicationService deduplicationService;
+    private final IngestionMode ingestionMode;
+    private final boolean bulkLoad;
+    private final int bulkBatchSize;
+    private final int bulkWriteDelayMillis;
 
-    public DataServiceImpl(ObjectMapper objectMapper, RawEventRepository rawEventRepository) {
+    public DataServiceImpl(ObjectMapper objectMapper, RawEventRepository rawEventRepository,
+                           RawEventTextTableRepository rawEventTextTableRepository,
+                           RawEventBulkRepository rawEventBulkRepository,
+                           DeduplicationService deduplicationService,
+                           @Value("${logdemo.ingestion.mode:jpa}") String ingestionMode,
+                           @Value("${logdemo.ingestion.bulk-load:false}") boolean bulkLoad,
+                           @Value("${logdemo.ingestion.bulk-batch-size:10000}") int bulkBatchSize,
+                           @Value("${logdemo.ingestion.bulk-write-delay-ms:60000}") int bulkWriteDelayMillis) {
         this.objectMapper = objectMapper;
         this.rawEventRepository = rawEventRepository;
+        this.rawEventTextTableRepository = rawEventTextTableRepository;
+        this.rawEventBulkRepository = rawEventBulkRepository;
+        this.deduplicationService = deduplicationService;
+        this.ingestionMode = IngestionMode.of(ingestionMode);
+        this.bulkLoad = bulkLoad;
+        this.bulkBatchSize = bulkBatchSize;
+        this.bulkWriteDelayMillis = bulkWriteDelayMillis;
     }
 
     @Override
@@ -38,14 +65,33 @@ public class DataServiceImpl implements DataService {
     @Override
     public void loadFromFile(String filePath) {
         LOG.info("Loading from file:" + filePath);
+        if (!bulkLoad) {
+            load(filePath);
+            return;
+        }
+        rawEventBulkRepository.beginBulkLoad(bulkWriteDelayMillis);
+        try {
+            load(filePath);
+        } finally {
+            rawEventBulkRepository.endBulkLoad();
+        }
+    }
+
+    private void load(String filePath) {
+        if (ingestionMode == IngestionMode.TEXT_TABLE) {
+            rawEventTextTableRepository.loadFromFile(filePath);
+            // the rows did not go through the filter, seed it again on the next check
+            deduplicationService.reset();
+            return;
+        }
+        if (bulkLoad) {
+            loadInBatches(filePath);
+            return;
+        }
         try (Stream<String> stream = Files.lines(Paths.get(filePath))) {
             stream.forEach(event -> {
                 try {
-                    RawEventDto rawEventDto = objectMapper.readValue(event, RawEventDto.class);
-                    RawEvent rawEvent = RawEventMapper.dtoToRawEventMapper(rawEventDto);
-                    LOG.info("Loading raw event to DB: " + rawEvent.getId().toString());
-                    rawEventRepository.save(rawEvent);
-                    LOG.info("Loaded raw event to DB: " + rawEvent.getId().toString());
+                    save(decode(event));
                 } catch (IOException e) {
                     LOG.error("Error reading event string: Unmarshalling error");
                 }
@@ -58,4 +104,59 @@ public class DataServiceImpl implements DataService {
 
     }
 
+    private void loadInBatches(String filePath) {
+        List<RawEvent> batch = new ArrayList<>(bulkBatchSize);
+        long loaded = 0;
+        try (Stream<String> stream = Files.lines(Paths.get(filePath))) {
+            for (String line : (Iterable<String>) stream::iterator) {
+                RawEvent rawEvent;
+                try {
+                    rawEvent = RawEventMapper.dtoToRawEventMapper(decode(line));
+                } catch (IOException e) {
+                    LOG.error("Error reading event string: Unmarshalling error");
+                    continue;
+                }
+                if (deduplicationService.isEnabled() && deduplicationService.isDuplicate(rawEvent.getId())) {
+                    LOG.info("Skipping duplicate raw event: " + rawEvent.getId().toString());
+                    continue;
+                }
+                batch.add(rawEvent);
+                if (batch.size() == bulkBatchSize) {
+                    loaded += rawEventBulkRepository.mergeAll(batch);
+                    batch.clear();
+                }
+            }
+            loaded += rawEventBulkRepository.mergeAll(batch);
+        } catch (IOException e) {
+            LOG.error("Error reading event string: I/O error");
+        }
+        LOG.info("Bulk loaded raw events to DB: " + loaded);
+    }
+
+    @Override
+    public RawEventDto decode(String line) throws IOException {
+        return objectMapper.readValue(line, RawEventDto.class);
+    }
+
+    @Override
+    public boolean save(RawEventDto rawEventDto) {
+        RawEvent rawEvent = RawEventMapper.dtoToRawEventMapper(rawEventDto);
+        if (!deduplicationService.isEnabled()) {
+            LOG.info("Loading raw event to DB: " + rawEvent.getId().toString());
+            rawEventRepository.save(rawEvent);
+            LOG.info("Loaded raw event to DB: " + rawEvent.getId().toString());
+        } else if (deduplicationService.isDuplicate(rawEvent.getId())) {
+            LOG.info("Skipping duplicate raw event: " + rawEvent.getId().toString());
+            return false;
+        } else {
+            LOG.info("Loading raw event to DB: " + rawEvent.getId().toString());
+            if (!rawEventRepository.insert(rawEvent)) {
+                LOG.info("Skipping duplicate raw event: " + rawEvent.getId().toString());
+                return false;
+            }
+            LOG.info("Loaded raw event to DB: " + rawEvent.getId().toString());
+        }
+        return true;
+    }
+
 }
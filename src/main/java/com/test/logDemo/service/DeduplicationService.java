@@ -0,0 +1,9 @@
+package com.test.logDemo.service;
+
+import com.test.logDemo.dao.model.RawEventId;
+
+public interface DeduplicationService {
+    boolean isEnabled();
+    boolean isDuplicate(RawEventId id);
+    void reset();
+}
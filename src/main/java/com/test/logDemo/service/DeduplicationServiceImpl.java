@@ -0,0 +1,97 @@
+package com.test.logDemo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import com.test.logDemo.dao.model.RawEventId;
+import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.util.ScalableBloomFilter;
+
+/**
+ * Drops replayed (id, state) lines before they reach RAW_EVENTS. Every key goes through a
+ * scalable Bloom filter seeded with the rows already loaded: a miss means the key was not seen
+ * by this filter and needs no further check; only possible duplicates are confirmed against a
+ * bounded LRU of recent keys and then against the database. Rows written around the filter, such
+ * as a text-table load, are not in it, so the insert after a miss still skips a key that exists.
+ */
+@Service
+public class DeduplicationServiceImpl implements DeduplicationService {
+    private static Logger LOG = LoggerFactory.getLogger(DeduplicationServiceImpl.class);
+
+    private final RawEventRepository rawEventRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final long expectedEvents;
+    private final double falsePositiveRate;
+    private final int recentIds;
+
+    private ScalableBloomFilter seen;
+    private Map<String, Boolean> recent;
+
+    public DeduplicationServiceImpl(RawEventRepository rawEventRepository, JdbcTemplate jdbcTemplate,
+                                    @Value("${logdemo.dedup.enabled:false}") boolean enabled,
+                                    @Value("${logdemo.dedup.expected-events:1000000}") long expectedEvents,
+                                    @Value("${logdemo.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+                                    @Value("${logdemo.dedup.recent-ids:100000}") int recentIds) {
+        this.rawEventRepository = rawEventRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.expectedEvents = expectedEvents;
+        this.falsePositiveRate = falsePositiveRate;
+        this.recentIds = recentIds;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized boolean isDuplicate(RawEventId id) {
+        if (seen == null) {
+            seed();
+        }
+        String key = key(id.getId(), id.getState());
+        if (!seen.mightContain(key)) {
+            seen.put(key);
+            recent.put(key, Boolean.TRUE);
+            return false;
+        }
+        if (recent.containsKey(key)) {
+            return true;
+        }
+        boolean duplicate = rawEventRepository.existsById(id);
+        recent.put(key, Boolean.TRUE);
+        return duplicate;
+    }
+
+    @Override
+    public synchronized void reset() {
+        seen = null;
+        recent = null;
+    }
+
+    private void seed() {
+        seen = new ScalableBloomFilter(expectedEvents, falsePositiveRate);
+        recent = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentIds;
+            }
+        };
+        jdbcTemplate.query("SELECT ID, STATE FROM RAW_EVENTS",
+                (RowCallbackHandler) resultSet -> seen.put(key(resultSet.getString(1), resultSet.getString(2))));
+        LOG.info(String.format("Deduplication filter seeded, %d bytes in %d stages", seen.sizeInBytes(), seen.stageCount()));
+    }
+
+    private static String key(String id, String state) {
+        return id + '\u0000' + state;
+    }
+}
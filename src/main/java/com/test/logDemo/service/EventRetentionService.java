@@ -0,0 +1,10 @@
+package com.test.logDemo.service;
+
+import java.util.List;
+
+import com.test.logDemo.dao.model.Event;
+
+public interface EventRetentionService {
+    List<Event> findByStartTimestamp(long from, long to);
+    int applyRetention();
+}
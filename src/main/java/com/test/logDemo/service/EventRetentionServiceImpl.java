@@ -0,0 +1,55 @@
+package com.test.logDemo.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dao.repository.CompactionRepository;
+import com.test.logDemo.dao.repository.EventQueryRepository;
+
+/**
+ * Time range reads and retention of EVENTS by start timestamp, both on the START_TIMESTAMP index: a range read
+ * touches only the events in range, and retention deletes the events older than logdemo.retention.days as one
+ * range of that index.
+ */
+@Service
+public class EventRetentionServiceImpl implements EventRetentionService {
+    private static Logger LOG = LoggerFactory.getLogger(EventRetentionServiceImpl.class);
+
+    private final EventQueryRepository eventQueryRepository;
+    private final CompactionRepository compactionRepository;
+    private final AlertQueryService alertQueryService;
+    private final int retentionDays;
+
+    public EventRetentionServiceImpl(EventQueryRepository eventQueryRepository, CompactionRepository compactionRepository,
+                                     AlertQueryService alertQueryService,
+                                     @Value("${logdemo.retention.days:0}") int retentionDays) {
+        this.eventQueryRepository = eventQueryRepository;
+        this.compactionRepository = compactionRepository;
+        this.alertQueryService = alertQueryService;
+        this.retentionDays = retentionDays;
+    }
+
+    @Override
+    public List<Event> findByStartTimestamp(long from, long to) {
+        return eventQueryRepository.findByStartTimestamp(from, to);
+    }
+
+    @Override
+    public int applyRetention() {
+        if (retentionDays <= 0) {
+            return 0;
+        }
+        int deleted = compactionRepository.deleteEventsBefore(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        if (deleted > 0) {
+            alertQueryService.invalidate();
+            LOG.info(String.format("Deleted %d events older than %d days", deleted, retentionDays));
+        }
+        return deleted;
+    }
+}
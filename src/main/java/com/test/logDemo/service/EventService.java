@@ -11,4 +11,5 @@ public interface EventService {
     List<RawEventDto> prepareRawEventsByState(Pageable slice, State state);
     void addAlertFlagsToSlice(List<RawEventDto> finished, List<RawEventDto> started);
     void addAlertFlagsToAll(int sliceSize);
+    boolean runUnlessPairing(Runnable task);
 }
@@ -1,105 +1,182 @@
 package com.test.logDemo.service;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import com.test.logDemo.dao.model.Event;
-import com.test.logDemo.dao.model.RawEvent;
 import com.test.logDemo.dao.repository.EventRepository;
+import com.test.logDemo.dao.repository.PreparedStatementRepository;
 import com.test.logDemo.dao.repository.RawEventRepository;
 import com.test.logDemo.dto.RawEventDto;
-import com.test.logDemo.mapper.RawEventMapper;
+import com.test.logDemo.execution.ExecutionStrategy;
+import com.test.logDemo.util.PairingEngine;
 import com.test.logDemo.util.State;
 
 @Service
 public class EventServiceImpl implements EventService {
-    private static final int DURATION_THRESHOLD = 4;
-    private static final int TIMEOUT = 800;
+    static final int DURATION_THRESHOLD = 4;
     private static Logger LOG = LoggerFactory.getLogger(EventServiceImpl.class);
     private final RawEventRepository rawEventRepository;
     private final EventRepository eventRepository;
     private final DataService dataService;
-    private final ExecutorService executorService;
-
-    public EventServiceImpl(RawEventRepository rawEventRepository, EventRepository eventRepository, DataService dataService, ExecutorService executorService) {
+    private final ExecutionStrategy executionStrategy;
+    private final SqlPairingService sqlPairingService;
+    private final StreamPairingService streamPairingService;
+    private final AlertQueryService alertQueryService;
+    private final PreparedStatementRepository preparedStatementRepository;
+    private final PairingEngine pairingEngine;
+    private final boolean statementCache;
+    // pairing runs share it, work that must not overlap a run (compaction) takes it exclusively
+    private final ReadWriteLock pairingLock = new ReentrantReadWriteLock();
+
+    public EventServiceImpl(RawEventRepository rawEventRepository, EventRepository eventRepository, DataService dataService, ExecutionStrategy executionStrategy,
+                            SqlPairingService sqlPairingService, StreamPairingService streamPairingService,
+                            AlertQueryService alertQueryService,
+                            PreparedStatementRepository preparedStatementRepository,
+                            @Value("${logdemo.pairing.engine:slice}") String pairingEngine,
+                            @Value("${logdemo.pairing.statement-cache:false}") boolean statementCache) {
         this.rawEventRepository = rawEventRepository;
         this.eventRepository = eventRepository;
         this.dataService = dataService;
-        this.executorService = executorService;
+        this.executionStrategy = executionStrategy;
+        this.sqlPairingService = sqlPairingService;
+        this.streamPairingService = streamPairingService;
+        this.alertQueryService = alertQueryService;
+        this.preparedStatementRepository = preparedStatementRepository;
+        this.pairingEngine = PairingEngine.of(pairingEngine);
+        this.statementCache = statementCache;
     }
 
     @Override
     public List<RawEventDto> prepareRawEventsByState(Pageable slice, State state) {
-        List<RawEvent> rawEvents = rawEventRepository.findAllById_State(state.get(), slice);
-        return rawEvents.stream()
-                .map(RawEventMapper::rawEventToDtoMapper)
-                .collect(Collectors.toList());
+        if (statementCache) {
+            return preparedStatementRepository.findSliceByState(state.get(), slice.getOffset(), slice.getPageSize());
+        }
+        return rawEventRepository.findSliceById_State(state.get(), slice);
     }
 
     @Override
     public void addAlertFlagsToSlice(List<RawEventDto> finished, List<RawEventDto> started) {
-        if (finished.size() != started.size()) {
-            LOG.error("started and finished event logs are not in sync, amount not equal, skip");
-        } else {
-            for (int i = 0; i < finished.size(); i++) {
-                RawEventDto finishedEventDto = finished.get(i);
-                RawEventDto startedEventDto = started.get(i);
-
-                Event event = createEvent(finishedEventDto, startedEventDto);
-                LOG.info(String.format("Loading event to DB: %s, alert?%s, duration: %d", event.getId(), event.getAlert(), event.getDuration()));
-                eventRepository.save(event);
-                LOG.info("Loaded event to DB: " + event.getId());
-            }
-        }
-
+        saveEvents(createEvents(finished, started));
     }
 
     @Override
     public void addAlertFlagsToAll(int sliceSize) {
+        pairingLock.readLock().lock();
+        try {
+            pairAll(sliceSize);
+        } finally {
+            pairingLock.readLock().unlock();
+        }
+    }
 
-        Pageable slice = dataService.getSliceSortedById(0, sliceSize);
-        List<RawEventDto> finishedRawEvents = prepareRawEventsByState(slice, State.FINISHED);
-        List<RawEventDto> startedRawEvents = prepareRawEventsByState(slice, State.STARTED);
-        addAlertFlagsToSlice(finishedRawEvents, startedRawEvents);
-
+    @Override
+    public boolean runUnlessPairing(Runnable task) {
+        if (!pairingLock.writeLock().tryLock()) {
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        } finally {
+            pairingLock.writeLock().unlock();
+        }
+    }
 
-        Pageable nextSlice = slice.next();
+    private void pairAll(int sliceSize) {
+        if (pairingEngine == PairingEngine.SQL) {
+            sqlPairingService.pairAll();
+            alertQueryService.invalidate();
+            return;
+        }
+        if (pairingEngine == PairingEngine.STREAM) {
+            streamPairingService.pairAll(sliceSize, this::saveEvents);
+            return;
+        }
 
-        for(int i = 0; i < rawEventRepository.count() - sliceSize; i++){
-            executorService.execute(task(nextSlice));
+        long slices = sliceCount(sliceSize);
+        int maxInFlight = executionStrategy.maxInFlight();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Pageable nextSlice = dataService.getSliceSortedById(0, sliceSize);
+
+        for (long i = 0; i < slices; i++) {
+            inFlight.acquireUninterruptibly();
+            task(nextSlice).whenComplete((done, e) -> {
+                if (e != null) {
+                    LOG.error("Error processing slice", e.getCause() != null ? e.getCause() : e);
+                }
+                inFlight.release();
+            });
             nextSlice = nextSlice.next();
         }
 
-        executorService.shutdown();
-        try {
-            if (!executorService.awaitTermination(TIMEOUT, TimeUnit.MILLISECONDS)) {
-                executorService.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
+        inFlight.acquireUninterruptibly(maxInFlight);
+    }
+
+    /**
+     * Each slice reads the same page of both states, so the larger state decides how many slices there are.
+     */
+    long sliceCount(int sliceSize) {
+        long rows = Math.max(rawEventRepository.countById_State(State.FINISHED.get()),
+                rawEventRepository.countById_State(State.STARTED.get()));
+        return (rows + sliceSize - 1) / sliceSize;
+    }
+
+    private CompletableFuture<Void> task(Pageable nextSlice) {
+        CompletableFuture<List<RawEventDto>> finishedRawEvents = CompletableFuture.supplyAsync(
+                () -> prepareRawEventsByState(nextSlice, State.FINISHED), executionStrategy.ioExecutor());
+        CompletableFuture<List<RawEventDto>> startedRawEvents = CompletableFuture.supplyAsync(
+                () -> prepareRawEventsByState(nextSlice, State.STARTED), executionStrategy.ioExecutor());
+        return finishedRawEvents
+                .thenCombineAsync(startedRawEvents, this::createEvents, executionStrategy.cpuExecutor())
+                .thenAcceptAsync(this::saveEvents, executionStrategy.ioExecutor());
+    }
+
+    private List<Event> createEvents(List<RawEventDto> finished, List<RawEventDto> started) {
+        if (finished.size() != started.size()) {
+            LOG.error("started and finished event logs are not in sync, amount not equal, skip");
+            return Collections.emptyList();
+        }
+        List<Event> events = new ArrayList<>(finished.size());
+        for (int i = 0; i < finished.size(); i++) {
+            events.add(createEvent(finished.get(i), started.get(i)));
         }
+        return events;
     }
 
-    private Runnable task(Pageable nextSlice){
-         return () -> {
-             List<RawEventDto> finishedRawEvents = prepareRawEventsByState(nextSlice, State.FINISHED);
-             List<RawEventDto> startedRawEvents = prepareRawEventsByState(nextSlice, State.STARTED);
-             addAlertFlagsToSlice(finishedRawEvents, startedRawEvents);
-         };
+    private void saveEvents(List<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (Event event : events) {
+            LOG.info(String.format("Loading event to DB: %s, alert?%s, duration: %d", event.getId(), event.getAlert(), event.getDuration()));
+        }
+        if (statementCache) {
+            preparedStatementRepository.mergeAll(events);
+        } else {
+            eventRepository.saveAll(events);
+        }
+        alertQueryService.onEventsSaved(events);
+        LOG.info("Loaded events to DB: " + events.size());
     }
 
-    private Event createEvent(RawEventDto finishedEventDto, RawEventDto startedEventDto) {
+    static Event createEvent(RawEventDto finishedEventDto, RawEventDto startedEventDto) {
         Event event = new Event();
         event.setId(finishedEventDto.getId());
         event.setHost(finishedEventDto.getHost());
         event.setType(finishedEventDto.getType());
+        event.setStartTimestamp(startedEventDto.getTimestamp());
         int duration = (int) (finishedEventDto.getTimestamp() - startedEventDto.getTimestamp());
         event.setDuration(duration);
         if (duration > DURATION_THRESHOLD) {
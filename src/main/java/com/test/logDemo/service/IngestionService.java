@@ -0,0 +1,11 @@
+package com.test.logDemo.service;
+
+import com.test.logDemo.dto.RawEventDto;
+
+public interface IngestionService {
+    boolean offer(RawEventDto rawEventDto) throws InterruptedException;
+    int backlog();
+    long failed();
+    void start();
+    void stop();
+}
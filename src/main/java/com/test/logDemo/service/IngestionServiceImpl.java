@@ -0,0 +1,147 @@
+package com.test.logDemo.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.test.logDemo.dto.RawEventDto;
+import com.test.logDemo.util.State;
+
+/**
+ * Bounded hand-off between streamed raw events and the pairing stage. Producers wait up to the
+ * offer timeout for room in the queue and are turned away after it; a single consumer saves
+ * each event and pairs it as soon as its other half has arrived. Unmatched halves are kept up to
+ * a limit, the oldest ones are left in RAW_EVENTS for the next batch run to pair. Events are saved
+ * one by one, so an event that cannot be saved is logged and counted without losing the rest of
+ * its batch; a failed pairing leaves both halves in RAW_EVENTS for the batch engines.
+ */
+public class IngestionServiceImpl implements IngestionService {
+    private static final int BATCH_SIZE = 1000;
+    private static final int POLL_TIMEOUT = 200;
+    private static Logger LOG = LoggerFactory.getLogger(IngestionServiceImpl.class);
+
+    private final DataService dataService;
+    private final EventService eventService;
+    private final BlockingQueue<RawEventDto> queue;
+    private final long offerTimeoutMillis;
+    private final Map<String, RawEventDto> unmatched;
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean running;
+    private Thread consumer;
+
+    public IngestionServiceImpl(DataService dataService, EventService eventService,
+                                int queueCapacity, long offerTimeoutMillis, int pendingEvents) {
+        this.dataService = dataService;
+        this.eventService = eventService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.unmatched = new LinkedHashMap<String, RawEventDto>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RawEventDto> eldest) {
+                return size() > pendingEvents;
+            }
+        };
+    }
+
+    @Override
+    public boolean offer(RawEventDto rawEventDto) throws InterruptedException {
+        return queue.offer(rawEventDto, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int backlog() {
+        return queue.size();
+    }
+
+    @Override
+    public long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consume, "ingestion-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (consumer != null) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumer = null;
+        }
+    }
+
+    private void consume() {
+        List<RawEventDto> batch = new ArrayList<>(BATCH_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                RawEventDto first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOG.error("Error pairing streamed events, left in RAW_EVENTS for the next run", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<RawEventDto> batch) {
+        List<RawEventDto> finished = new ArrayList<>();
+        List<RawEventDto> started = new ArrayList<>();
+        for (RawEventDto rawEventDto : batch) {
+            if (!save(rawEventDto)) {
+                continue;
+            }
+            RawEventDto other = unmatched.remove(rawEventDto.getId());
+            if (other == null || other.getState().equals(rawEventDto.getState())) {
+                unmatched.put(rawEventDto.getId(), rawEventDto);
+            } else if (State.FINISHED.get().equals(rawEventDto.getState())) {
+                finished.add(rawEventDto);
+                started.add(other);
+            } else {
+                finished.add(other);
+                started.add(rawEventDto);
+            }
+        }
+        if (!finished.isEmpty()) {
+            eventService.addAlertFlagsToSlice(finished, started);
+        }
+    }
+
+    private boolean save(RawEventDto rawEventDto) {
+        try {
+            return dataService.save(rawEventDto);
+        } catch (RuntimeException e) {
+            failed.increment();
+            LOG.error("Error saving streamed event " + rawEventDto.getId(), e);
+            return false;
+        }
+    }
+}
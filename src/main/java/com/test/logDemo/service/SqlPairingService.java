@@ -0,0 +1,6 @@
+package com.test.logDemo.service;
+
+public interface SqlPairingService {
+    int pairAll();
+    int pairRange(String fromId, String toId);
+}
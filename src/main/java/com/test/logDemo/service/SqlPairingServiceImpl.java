@@ -0,0 +1,169 @@
+package com.test.logDemo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.test.logDemo.execution.ExecutionStrategy;
+import com.test.logDemo.util.State;
+
+/**
+ * Pairs FINISHED and STARTED rows of RAW_EVENTS with one self-join inside the database,
+ * computing duration and alert flag in SQL and merging the result into EVENTS.
+ * With more than one range the key space between the smallest and the largest FINISHED id
+ * is split into ranges of equal width, each merged in its own transaction on the repository
+ * executor. The bounds only need the two ends of the state index, not a count or a scan.
+ */
+@Service
+public class SqlPairingServiceImpl implements SqlPairingService {
+    private static Logger LOG = LoggerFactory.getLogger(SqlPairingServiceImpl.class);
+
+    // characters after the common prefix of the smallest and largest id that are interpolated
+    private static final int BOUND_CHARS = 3;
+
+    private static final String PAIR_EVENTS =
+            "MERGE INTO EVENTS E USING (" +
+            "  SELECT F.ID, CAST(F.TIMESTAMP - S.TIMESTAMP AS INTEGER) AS DURATION, F.TYPE, F.HOST," +
+            "    CASE WHEN F.TIMESTAMP - S.TIMESTAMP > ? THEN TRUE END AS ALERT, S.TIMESTAMP AS START_TIMESTAMP" +
+            "  FROM RAW_EVENTS F JOIN RAW_EVENTS S ON S.ID = F.ID AND S.STATE = '" + State.STARTED.get() + "'" +
+            "  WHERE F.STATE = '" + State.FINISHED.get() + "'%s" +
+            ") P ON (E.ID = P.ID) " +
+            "WHEN MATCHED THEN UPDATE SET E.DURATION = P.DURATION, E.TYPE = P.TYPE, E.HOST = P.HOST, E.ALERT = P.ALERT, " +
+            "  E.START_TIMESTAMP = P.START_TIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (ID, DURATION, TYPE, HOST, ALERT, START_TIMESTAMP) " +
+            "  VALUES (P.ID, P.DURATION, P.TYPE, P.HOST, P.ALERT, P.START_TIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutionStrategy executionStrategy;
+    private final int ranges;
+
+    public SqlPairingServiceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 ExecutionStrategy executionStrategy,
+                                 @Value("${logdemo.pairing.sql.ranges:1}") int ranges) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executionStrategy = executionStrategy;
+        this.ranges = ranges;
+    }
+
+    @Override
+    public int pairAll() {
+        List<String> bounds = rangeBounds();
+        if (bounds.isEmpty()) {
+            int paired = pairRangeInTransaction(null, null);
+            LOG.info("Paired events in database: " + paired);
+            return paired;
+        }
+
+        List<CompletableFuture<Integer>> rangeTasks = new ArrayList<>();
+        for (int i = 0; i <= bounds.size(); i++) {
+            String fromId = i == 0 ? null : bounds.get(i - 1);
+            String toId = i == bounds.size() ? null : bounds.get(i);
+            rangeTasks.add(CompletableFuture.supplyAsync(
+                    () -> pairRangeInTransaction(fromId, toId), executionStrategy.ioExecutor()));
+        }
+        int paired = 0;
+        for (CompletableFuture<Integer> rangeTask : rangeTasks) {
+            paired += rangeTask.join();
+        }
+        LOG.info(String.format("Paired events in database: %d in %d ranges", paired, rangeTasks.size()));
+        return paired;
+    }
+
+    @Override
+    public int pairRange(String fromId, String toId) {
+        StringBuilder range = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        args.add(EventServiceImpl.DURATION_THRESHOLD);
+        if (fromId != null) {
+            range.append(" AND F.ID >= ?");
+            args.add(fromId);
+        }
+        if (toId != null) {
+            range.append(" AND F.ID < ?");
+            args.add(toId);
+        }
+        return jdbcTemplate.update(String.format(PAIR_EVENTS, range), args.toArray());
+    }
+
+    private int pairRangeInTransaction(String fromId, String toId) {
+        Integer paired = transactionTemplate.execute(status -> pairRange(fromId, toId));
+        return paired == null ? 0 : paired;
+    }
+
+    List<String> rangeBounds() {
+        List<String> bounds = new ArrayList<>();
+        if (ranges <= 1) {
+            return bounds;
+        }
+        String first = jdbcTemplate.queryForObject(
+                "SELECT MIN(ID) FROM RAW_EVENTS WHERE STATE = ?", String.class, State.FINISHED.get());
+        String last = jdbcTemplate.queryForObject(
+                "SELECT MAX(ID) FROM RAW_EVENTS WHERE STATE = ?", String.class, State.FINISHED.get());
+        if (first == null || first.equals(last)) {
+            return bounds;
+        }
+        return rangeBounds(first, last, ranges);
+    }
+
+    /**
+     * Bounds that split the ids between first and last into parts of about equal width: the
+     * characters after the common prefix are read as digits of a number, which is interpolated.
+     * Bounds are increasing, so the ranges never overlap; ids that are not evenly spread only
+     * make the ranges uneven.
+     */
+    static List<String> rangeBounds(String first, String last, int ranges) {
+        int prefix = 0;
+        while (prefix < first.length() && prefix < last.length() && first.charAt(prefix) == last.charAt(prefix)) {
+            prefix++;
+        }
+        long from = keyDigits(first, prefix);
+        long to = keyDigits(last, prefix);
+        List<String> bounds = new ArrayList<>();
+        String previous = first;
+        for (int i = 1; i < ranges; i++) {
+            String bound = first.substring(0, prefix) + keyChars(from + (to - from) * i / ranges);
+            if (bound.compareTo(previous) > 0 && bound.compareTo(last) <= 0) {
+                bounds.add(bound);
+                previous = bound;
+            }
+        }
+        return bounds;
+    }
+
+    private static long keyDigits(String id, int offset) {
+        long digits = 0;
+        for (int i = 0; i < BOUND_CHARS; i++) {
+            digits = (digits << 16) | (offset + i < id.length() ? id.charAt(offset + i) : 0);
+        }
+        return digits;
+    }
+
+    /**
+     * Stops at the first control character or space, which becomes '!' (or nothing for 0): the bound
+     * then compares the same way with and without the padding of PAD SPACE, and bounds stay in order.
+     */
+    private static String keyChars(long digits) {
+        StringBuilder chars = new StringBuilder(BOUND_CHARS);
+        for (int i = 0; i < BOUND_CHARS; i++) {
+            char c = (char) (digits >>> (16 * (BOUND_CHARS - 1 - i)));
+            if (c <= ' ') {
+                if (c != 0) {
+                    chars.append('!');
+                }
+                break;
+            }
+            chars.append(c);
+        }
+        return chars.toString();
+    }
+}
@@ -0,0 +1,10 @@
+package com.test.logDemo.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.test.logDemo.dao.model.Event;
+
+public interface StreamPairingService {
+    long pairAll(int batchSize, Consumer<List<Event>> writer);
+}
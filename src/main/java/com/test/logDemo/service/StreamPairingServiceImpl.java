@@ -0,0 +1,100 @@
+package com.test.logDemo.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dao.model.RawEvent;
+import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.execution.ExecutionStrategy;
+import com.test.logDemo.mapper.RawEventMapper;
+import com.test.logDemo.util.State;
+
+/**
+ * Pairs events in a single pass over RAW_EVENTS ordered by (id, state): a FINISHED row is held
+ * until the next row, which is its STARTED half when the event is complete. The rows are read in
+ * pages keyed on the last (id, state) seen, so memory is bounded by one page, the pending row and
+ * the batches in flight; full batches are handed to the writer on the repository executor, with
+ * at most as many batches in flight as it has threads.
+ */
+@Service
+public class StreamPairingServiceImpl implements StreamPairingService {
+    private static Logger LOG = LoggerFactory.getLogger(StreamPairingServiceImpl.class);
+
+    private final RawEventRepository rawEventRepository;
+    private final ExecutionStrategy executionStrategy;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public StreamPairingServiceImpl(RawEventRepository rawEventRepository, ExecutionStrategy executionStrategy) {
+        this.rawEventRepository = rawEventRepository;
+        this.executionStrategy = executionStrategy;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long pairAll(int batchSize, Consumer<List<Event>> writer) {
+        Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+        List<Event> batch = new ArrayList<>(batchSize);
+        long paired = 0;
+
+        Pageable page = PageRequest.of(0, RawEventRepository.STREAM_PAGE_SIZE);
+        RawEvent finished = null;
+        String lastId = "";
+        String lastState = "";
+        List<RawEvent> rawEvents;
+        do {
+            rawEvents = rawEventRepository.findPageAfter(lastId, lastState, page);
+            entityManager.clear();
+            for (RawEvent rawEvent : rawEvents) {
+                String state = rawEvent.getId().getState();
+                if (State.STARTED.get().equals(state) && finished != null
+                        && finished.getId().getId().equals(rawEvent.getId().getId())) {
+                    batch.add(EventServiceImpl.createEvent(RawEventMapper.rawEventToDtoMapper(finished),
+                            RawEventMapper.rawEventToDtoMapper(rawEvent)));
+                    paired++;
+                    if (batch.size() == batchSize) {
+                        write(batch, writer, inFlight);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                finished = State.FINISHED.get().equals(state) ? rawEvent : null;
+            }
+            if (!rawEvents.isEmpty()) {
+                RawEvent last = rawEvents.get(rawEvents.size() - 1);
+                lastId = last.getId().getId();
+                lastState = last.getId().getState();
+            }
+        } while (rawEvents.size() == page.getPageSize());
+        if (!batch.isEmpty()) {
+            write(batch, writer, inFlight);
+        }
+        while (!inFlight.isEmpty()) {
+            inFlight.poll().join();
+        }
+        LOG.info("Paired events from stream: " + paired);
+        return paired;
+    }
+
+    private void write(List<Event> batch, Consumer<List<Event>> writer, Deque<CompletableFuture<Void>> inFlight) {
+        if (inFlight.size() >= executionStrategy.ioParallelism()) {
+            inFlight.poll().join();
+        }
+        inFlight.add(CompletableFuture.runAsync(() -> writer.accept(batch), executionStrategy.ioExecutor()));
+    }
+}
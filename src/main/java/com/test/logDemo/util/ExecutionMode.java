@@ -0,0 +1,10 @@
+package com.test.logDemo.util;
+
+public enum ExecutionMode {
+    POOLED,
+    VIRTUAL;
+
+    public static ExecutionMode of(String mode) {
+        return valueOf(mode.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,10 @@
+package com.test.logDemo.util;
+
+public enum IngestionMode {
+    JPA,
+    TEXT_TABLE;
+
+    public static IngestionMode of(String mode) {
+        return valueOf(mode.trim().toUpperCase().replace('-', '_'));
+    }
+}
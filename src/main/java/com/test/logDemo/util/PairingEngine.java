@@ -0,0 +1,11 @@
+package com.test.logDemo.util;
+
+public enum PairingEngine {
+    SLICE,
+    SQL,
+    STREAM;
+
+    public static PairingEngine of(String engine) {
+        return valueOf(engine.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,43 @@
+-- Managed schema for the production profile (spring.jpa.hibernate.ddl-auto=none).
+-- Every statement is idempotent, tables created by earlier versions as MEMORY tables are converted to CACHED.
+
+-- hsqldb.cache_rows / hsqldb.cache_size (KB): rows of CACHED tables kept on the heap
+SET FILES CACHE ROWS 100000;
+SET FILES CACHE SIZE 102400;
+-- hsqldb.nio_data_file / hsqldb.nio_max_size (MB): memory-mapped .data file
+SET FILES NIO TRUE;
+SET FILES NIO SIZE 1024;
+-- hsqldb.log_size (MB): checkpoint once the .log reaches this size
+SET FILES LOG SIZE 200;
+SET DATABASE DEFAULT TABLE TYPE CACHED;
+
+-- ids are at most 64 characters (10 in the sample logs, up to 15 from the generator); a longer id is rejected
+CREATE CACHED TABLE IF NOT EXISTS RAW_EVENTS (
+	ID VARCHAR(64) NOT NULL,
+	STATE VARCHAR(8) NOT NULL,
+	TYPE VARCHAR(20),
+	HOST VARCHAR(10),
+	TIMESTAMP BIGINT,
+	PRIMARY KEY (ID, STATE)
+);
+SET TABLE RAW_EVENTS TYPE CACHED;
+-- narrows the ids of tables created with VARCHAR(256), nothing is rewritten once the type matches
+ALTER TABLE RAW_EVENTS ALTER COLUMN ID SET DATA TYPE VARCHAR(64);
+-- slices of one state in id order (findSliceById_State, findAllById_State)
+CREATE INDEX IF NOT EXISTS IDX_RAW_EVENTS_STATE_ID ON RAW_EVENTS (STATE, ID);
+
+CREATE CACHED TABLE IF NOT EXISTS EVENTS (
+	ID VARCHAR(64) NOT NULL,
+	DURATION INTEGER,
+	TYPE VARCHAR(20),
+	HOST VARCHAR(10),
+	ALERT BOOLEAN,
+	START_TIMESTAMP BIGINT,
+	PRIMARY KEY (ID)
+);
+SET TABLE EVENTS TYPE CACHED;
+ALTER TABLE EVENTS ALTER COLUMN ID SET DATA TYPE VARCHAR(64);
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_HOST_TYPE_DURATION ON EVENTS (HOST, TYPE, DURATION);
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_TYPE_DURATION ON EVENTS (TYPE, DURATION);
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_ALERT_DURATION ON EVENTS (ALERT, DURATION);
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_START_TIMESTAMP ON EVENTS (START_TIMESTAMP);
@@ -0,0 +1,41 @@
+package com.test.logDemo.configuration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.execution.ExecutionStrategy;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class MainConfigurationTest {
+    @Autowired
+    private HikariDataSource dataSource;
+    @Autowired
+    private ExecutionStrategy executionStrategy;
+    @Autowired
+    private ConnectionWaitMetrics connectionWaitMetrics;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void whenContextStarts_thenPoolIsSizedToRepositoryTasks() {
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(executionStrategy.ioParallelism() + 4);
+    }
+
+    @Test
+    public void whenConnectionIsUsed_thenWaitIsRecorded() {
+        jdbcTemplate.queryForObject("SELECT COUNT(*) FROM RAW_EVENTS", Long.class);
+        assertThat((Long) connectionWaitMetrics.snapshot().get("acquisitions")).isGreaterThan(0L);
+    }
+}
@@ -0,0 +1,96 @@
+package com.test.logDemo.dao.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dao.model.RawEventBuilder;
+import com.test.logDemo.dao.model.RawEventId;
+import com.test.logDemo.dto.RawEventDto;
+import com.test.logDemo.execution.ExecutionStrategy;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class PreparedStatementRepositoryTest {
+    @Autowired
+    private PreparedStatementRepository preparedStatementRepository;
+    @Autowired
+    private RawEventRepository rawEventRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ExecutionStrategy executionStrategy;
+    @Autowired
+    private ConnectionWaitMetrics connectionWaitMetrics;
+
+    @Before
+    public void setUp() {
+        rawEventRepository.deleteAll();
+        eventRepository.deleteAll();
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgrb", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495213L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgra", "STARTED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(1491377495212L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgrc", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495210L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgra", "FINISHED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(1491377495217L).createRawEvent());
+    }
+
+    @After
+    public void tearDown() {
+        rawEventRepository.deleteAll();
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    public void whenReadingSlicesRepeatedly_thenEachSliceIsOrderedById() {
+        for (int i = 0; i < 3; i++) {
+            List<RawEventDto> slice = preparedStatementRepository.findSliceByState("STARTED", 1, 2);
+            assertThat(slice).extracting("id").containsExactly("scsmbstgrb", "scsmbstgrc");
+        }
+        assertThat(preparedStatementRepository.findSliceByState("FINISHED", 0, 2)).extracting("timestamp").containsExactly(1491377495217L);
+    }
+
+    @Test
+    public void whenMergingEvents_thenTheyAreInsertedOrUpdated() {
+        Event event = new Event();
+        event.setId("scsmbstgra");
+        event.setDuration(5);
+        event.setAlert(true);
+        event.setStartTimestamp(1491377495212L);
+        preparedStatementRepository.mergeAll(Arrays.asList(event));
+        event.setDuration(6);
+        preparedStatementRepository.mergeAll(Arrays.asList(event));
+
+        assertThat(eventRepository.count()).isEqualTo(1);
+        assertThat(eventRepository.findById("scsmbstgra").get().getDuration()).isEqualTo(6);
+    }
+
+    @Test
+    public void whenOpeningASession_thenItsConnectionComesFromThePool() {
+        PreparedStatementRepository repository = new PreparedStatementRepository(dataSource, executionStrategy);
+        try {
+            long acquisitions = (Long) connectionWaitMetrics.snapshot().get("acquisitions");
+            repository.findSliceByState("STARTED", 0, 1);
+            repository.findSliceByState("STARTED", 1, 1);
+            assertThat((Long) connectionWaitMetrics.snapshot().get("acquisitions")).isEqualTo(acquisitions + 1);
+        } finally {
+            repository.close();
+        }
+    }
+}
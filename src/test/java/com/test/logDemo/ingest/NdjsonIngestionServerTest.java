@@ -0,0 +1,130 @@
+package com.test.logDemo.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dto.RawEventDto;
+import com.test.logDemo.metrics.ConnectionWaitMetrics;
+import com.test.logDemo.service.AlertQueryService;
+import com.test.logDemo.service.DataService;
+import com.test.logDemo.service.IngestionService;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class NdjsonIngestionServerTest {
+    private static final int ROOM = 2;
+
+    @Autowired
+    private DataService dataService;
+    @Autowired
+    private AlertQueryService alertQueryService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final List<RawEventDto> queued = new ArrayList<>();
+    private NdjsonIngestionServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        IngestionService fullAfterRoom = new IngestionService() {
+            @Override
+            public boolean offer(RawEventDto rawEventDto) {
+                return queued.size() < ROOM && queued.add(rawEventDto);
+            }
+
+            @Override
+            public int backlog() {
+                return queued.size();
+            }
+
+            @Override
+            public long failed() {
+                return 0;
+            }
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+            }
+        };
+        server = new NdjsonIngestionServer(dataService, fullAfterRoom, alertQueryService, new ConnectionWaitMetrics(),
+                objectMapper, 0, 1);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void whenLinesFitInQueue_thenRequestIsAccepted() throws IOException {
+        HttpURLConnection connection = post("{\"id\":\"httpa\", \"state\":\"STARTED\", \"timestamp\":1491377495212}\n" +
+                "\n" +
+                "{\"id\":\"httpa\", \"state\":\"FINISHED\", \"timestamp\":1491377495217}\n");
+
+        assertThat(connection.getResponseCode()).isEqualTo(202);
+        assertThat(read(connection.getInputStream())).isEqualTo("{\"accepted\":2,\"invalid\":0}");
+        assertThat(queued).extracting("state").containsExactly("STARTED", "FINISHED");
+    }
+
+    @Test
+    public void whenQueueStaysFull_thenRequestEndsWith429AndAcceptedCount() throws IOException {
+        HttpURLConnection connection = post("not json\n" +
+                "{\"id\":\"httpa\", \"state\":\"STARTED\", \"timestamp\":1491377495212}\n" +
+                "{\"id\":\"httpb\", \"state\":\"STARTED\", \"timestamp\":1491377495213}\n" +
+                "{\"id\":\"httpc\", \"state\":\"STARTED\", \"timestamp\":1491377495214}\n");
+
+        assertThat(connection.getResponseCode()).isEqualTo(429);
+        assertThat(connection.getHeaderField("Retry-After")).isEqualTo("1");
+        assertThat(read(connection.getErrorStream())).isEqualTo("{\"accepted\":2,\"invalid\":1}");
+        assertThat(queued).extracting("id").containsExactly("httpa", "httpb");
+    }
+
+    private HttpURLConnection post(String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + "/events")
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int count;
+        try (InputStream input = in) {
+            while ((count = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, count);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+package com.test.logDemo.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.test.logDemo.dto.RawEventDto;
+
+public class EventLogGeneratorTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void whenNoOrphans_thenEveryIdIsWrittenStartedAndFinished() throws IOException {
+        String log = generate("--lines=10000", "--window=50", "--orphans=0", "--duration=uniform:1:9");
+        String[] lines = log.split("\n");
+        assertThat(lines.length).isEqualTo(10000);
+
+        Map<String, Long> startedAt = new HashMap<>();
+        Map<String, Long> finishedAt = new HashMap<>();
+        for (String line : lines) {
+            RawEventDto rawEventDto = objectMapper.readValue(line, RawEventDto.class);
+            (rawEventDto.getState().equals("STARTED") ? startedAt : finishedAt).put(rawEventDto.getId(), rawEventDto.getTimestamp());
+        }
+        assertThat(startedAt.keySet()).isEqualTo(finishedAt.keySet());
+        for (Map.Entry<String, Long> started : startedAt.entrySet()) {
+            assertThat(finishedAt.get(started.getKey()) - started.getValue()).isBetween(1L, 9L);
+        }
+    }
+
+    @Test
+    public void whenLinesIsOddOrEventsAreOrphaned_thenNoPendingHalfIsDropped() throws IOException {
+        assertThat(generate("--lines=9999", "--window=50", "--orphans=0").split("\n").length).isEqualTo(10000);
+
+        Map<String, Integer> halves = new HashMap<>();
+        for (String line : generate("--lines=10000", "--window=50", "--orphans=0.3", "--seed=3").split("\n")) {
+            halves.merge(objectMapper.readValue(line, RawEventDto.class).getId(), 1, Integer::sum);
+        }
+        long events = halves.values().stream().filter(count -> count == 2).count();
+        long orphans = halves.values().stream().filter(count -> count == 1).count();
+        assertThat(2 * events + orphans).isBetween(10000L, 10001L);
+        assertThat((double) orphans / (events + orphans)).isBetween(0.25, 0.35);
+    }
+
+    @Test
+    public void whenSeedIsTheSame_thenLogIsTheSame() throws IOException {
+        assertThat(generate("--lines=1000", "--seed=7")).isEqualTo(generate("--lines=1000", "--seed=7"));
+        assertThat(generate("--lines=1000", "--seed=7")).isNotEqualTo(generate("--lines=1000", "--seed=8"));
+    }
+
+    private static String generate(String... args) throws IOException {
+        StringWriter writer = new StringWriter();
+        new EventLogGenerator(GeneratorSettings.of(args)).generate(writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.test.logDemo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dao.repository.EventRepository;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class AlertQueryServiceImplTest {
+    @Autowired
+    private AlertQueryService alertQueryService;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Before
+    public void setUp() {
+        eventRepository.deleteAll();
+        alertQueryService.invalidate();
+        eventRepository.saveAll(Arrays.asList(
+                event("alerta", 9, "APPLICATION_LOG", "12345", true),
+                event("alertb", 3, "APPLICATION_LOG", "12345", null),
+                event("alertc", 7, null, null, true)));
+    }
+
+    @After
+    public void tearDown() {
+        eventRepository.deleteAll();
+        alertQueryService.invalidate();
+    }
+
+    @Test
+    public void whenQueryingByHostAndType_thenLongestEventsFirst() {
+        List<Event> events = alertQueryService.findTopByDuration("12345", "APPLICATION_LOG", false, 10);
+        assertThat(events).extracting("id").containsExactly("alerta", "alertb");
+    }
+
+    @Test
+    public void whenEventsAreSaved_thenCachedQueriesSeeThem() {
+        assertThat(alertQueryService.findTopByDuration(null, null, true, 10)).extracting("id").containsExactly("alerta", "alertc");
+
+        List<Event> saved = Arrays.asList(event("alertd", 12, "APPLICATION_LOG", "12345", true));
+        eventRepository.saveAll(saved);
+        alertQueryService.onEventsSaved(saved);
+
+        assertThat(alertQueryService.findTopByDuration(null, null, true, 2)).extracting("id").containsExactly("alertd", "alerta");
+    }
+
+    @Test
+    public void whenQueryingWithTimeWindow_thenOnlyEventsStartedSinceThenAreReturned() {
+        List<Event> saved = Arrays.asList(
+                startedAt(event("alertd", 12, "APPLICATION_LOG", "12345", true), 1491377495000L),
+                startedAt(event("alerte", 5, "APPLICATION_LOG", "12345", true), 1491377499000L),
+                startedAt(event("alertf", 4, "APPLICATION_LOG", "12345", null), 1491377499500L));
+        eventRepository.saveAll(saved);
+        alertQueryService.onEventsSaved(saved);
+
+        assertThat(alertQueryService.findTopByDuration("12345", null, false, 1491377499000L, 10))
+                .extracting("id").containsExactly("alerte", "alertf");
+        assertThat(alertQueryService.findTopByDuration(null, null, true, 1491377499000L, 10))
+                .extracting("id").containsExactly("alerte");
+    }
+
+    private static Event startedAt(Event event, long startTimestamp) {
+        event.setStartTimestamp(startTimestamp);
+        return event;
+    }
+
+    private static Event event(String id, int duration, String type, String host, Boolean alert) {
+        Event event = new Event();
+        event.setId(id);
+        event.setDuration(duration);
+        event.setType(type);
+        event.setHost(host);
+        event.setAlert(alert);
+        return event;
+    }
+}
@@ -0,0 +1,92 @@
+package com.test.logDemo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dao.model.RawEventBuilder;
+import com.test.logDemo.dao.model.RawEventId;
+import com.test.logDemo.dao.repository.EventRepository;
+import com.test.logDemo.dao.repository.RawEventRepository;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class CompactionServiceImplTest {
+    @Autowired
+    private CompactionService compactionService;
+    @Autowired
+    private SqlPairingService sqlPairingService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private RawEventRepository rawEventRepository;
+    @Autowired
+    private EventRepository eventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        eventRepository.deleteAll();
+        rawEventRepository.deleteAll();
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgra", "STARTED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(1491377495212L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgra", "FINISHED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(1491377495217L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgrb", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495213L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgrb", "FINISHED")).setType(null).setHost(null).setTimestamp(1491377495216L).createRawEvent());
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgrc", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495210L).createRawEvent());
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.execute("DELETE FROM EVENT_AGGREGATES");
+        eventRepository.deleteAll();
+        rawEventRepository.deleteAll();
+    }
+
+    @Test
+    public void whenCompacting_thenPairedRawEventsAreDeletedAndOldEventsRolledUp() {
+        // the unmatched STARTED half makes the slice engine skip its slice, pair inside the database
+        assertThat(sqlPairingService.pairAll()).isEqualTo(2);
+        assertThat(eventRepository.count()).isEqualTo(2);
+
+        compactionService.compact();
+
+        assertThat(rawEventRepository.count()).isEqualTo(1);
+        assertThat(rawEventRepository.existsById(new RawEventId("scsmbstgrc", "STARTED"))).isTrue();
+        assertThat(eventRepository.count()).isEqualTo(0);
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(EVENT_COUNT) FROM EVENT_AGGREGATES", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT DURATION_MAX FROM EVENT_AGGREGATES WHERE HOST = '12345'", Integer.class)).isEqualTo(5);
+    }
+
+    @Test
+    public void whenCompactingDuringPairing_thenRawEventsAndEventsAreKept() {
+        assertThat(sqlPairingService.pairAll()).isEqualTo(2);
+
+        assertThat(eventService.runUnlessPairing(() -> CompletableFuture.runAsync(compactionService::compact).join())).isTrue();
+
+        assertThat(rawEventRepository.count()).isEqualTo(5);
+        assertThat(eventRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void whenStartTimestampIsNegative_thenItIsRolledIntoTheMinuteItStartedIn() {
+        jdbcTemplate.update("INSERT INTO EVENTS (ID, DURATION, ALERT, START_TIMESTAMP) VALUES ('scsmbstgrd', 3, FALSE, -1)");
+
+        compactionService.compact();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT MINUTE_START FROM EVENT_AGGREGATES", Long.class)).isEqualTo(-60000L);
+    }
+}
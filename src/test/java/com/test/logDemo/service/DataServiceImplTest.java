@@ -3,6 +3,10 @@ package com.test.logDemo.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.After;
@@ -12,6 +16,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.ResourceUtils;
@@ -20,7 +25,9 @@ import com.test.logDemo.LogDemoApplication;
 import com.test.logDemo.dao.model.RawEvent;
 import com.test.logDemo.dao.model.RawEventBuilder;
 import com.test.logDemo.dao.model.RawEventId;
+import com.test.logDemo.dao.repository.RawEventBulkRepository;
 import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.dao.repository.RawEventTextTableRepository;
 import com.test.logDemo.util.State;
 
 @RunWith(SpringRunner.class)
@@ -31,6 +38,14 @@ public class DataServiceImplTest {
     private RawEventRepository rawEventRepository;
     @Autowired
     private DataService dataService;
+    @Autowired
+    private RawEventTextTableRepository rawEventTextTableRepository;
+    @Autowired
+    private DeduplicationService deduplicationService;
+    @Autowired
+    private RawEventBulkRepository rawEventBulkRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Before
     public void setup() {
@@ -67,4 +82,72 @@ public class DataServiceImplTest {
         assertThat(rawEventRepository.count()).isEqualTo(2);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void whenLoadFromTextTable_thenDataIsLoadedToDb() throws FileNotFoundException {
+        rawEventRepository.deleteAll();
+        String filePath = ResourceUtils.getFile("classpath:data.txt").getPath();
+        int loaded = rawEventTextTableRepository.loadFromFile(filePath);
+        assertThat(loaded).isEqualTo(2);
+        assertThat(rawEventRepository.findById(new RawEventId("scsmbstgra", "STARTED")).get().getTimestamp()).isEqualTo(1491377495212L);
+    }
+
+    @Test
+    public void whenTextTableHasRepeatedAndBadLines_thenFirstGoodLineOfEachKeyIsLoaded() throws IOException {
+        rawEventRepository.deleteAll();
+        Path file = Files.createTempFile("raw-events", ".txt");
+        try {
+            Files.write(file, Arrays.asList(
+                    "{\"id\":\"scsmbstgra\", \"state\":\"STARTED\", \"type\":\"APPLICATION_LOG\", \"host\":\"12345\", \"timestamp\":1491377495212}",
+                    "{\"id\":\"scsmbstgra\", \"state\":\"STARTED\", \"type\":\"OTHER\", \"host\":\"99999\", \"timestamp\":1491377495299}",
+                    "{\"id\":\"scsmbstgrb\", \"state\":\"STARTED\", \"timestamp\":\"not a number\"}",
+                    "{\"id\":\"scsmbstgrb\", \"state\":\"STARTED\", \"timestamp\":1491377495213}",
+                    "{\"id\":\"scsmbstgrc\", \"state\":\"STARTED\", \"timestamp\":\"bad\"}"));
+            int loaded = rawEventTextTableRepository.loadFromFile(file.toString());
+            assertThat(loaded).isEqualTo(2);
+            RawEvent first = rawEventRepository.findById(new RawEventId("scsmbstgra", "STARTED")).get();
+            assertThat(first.getType()).isEqualTo("APPLICATION_LOG");
+            assertThat(first.getHost()).isEqualTo("12345");
+            assertThat(first.getTimestamp()).isEqualTo(1491377495212L);
+            assertThat(rawEventRepository.findById(new RawEventId("scsmbstgrb", "STARTED")).get().getTimestamp()).isEqualTo(1491377495213L);
+            assertThat(rawEventRepository.existsById(new RawEventId("scsmbstgrc", "STARTED"))).isFalse();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void whenEventIsReplayed_thenItIsReportedAsDuplicate() {
+        deduplicationService.reset();
+        assertThat(deduplicationService.isDuplicate(new RawEventId("scsmbstgra", "STARTED"))).isTrue();
+        assertThat(deduplicationService.isDuplicate(new RawEventId("scsmbstgrx", "STARTED"))).isFalse();
+        assertThat(deduplicationService.isDuplicate(new RawEventId("scsmbstgrx", "STARTED"))).isTrue();
+        deduplicationService.reset();
+    }
+
+    @Test
+    public void whenInsertingAKeyLoadedAroundTheFilter_thenItIsSkippedWithoutFailing() {
+        assertThat(rawEventRepository.insert(new RawEventBuilder().setId(new RawEventId("scsmbstgra", "STARTED")).setType("OTHER").setHost("99999").setTimestamp(1491377495299L).createRawEvent())).isFalse();
+        assertThat(rawEventRepository.findById(new RawEventId("scsmbstgra", "STARTED")).get().getTimestamp()).isEqualTo(1491377495212L);
+        assertThat(rawEventRepository.insert(new RawEventBuilder().setId(new RawEventId("scsmbstgrd", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495220L).createRawEvent())).isTrue();
+        assertThat(rawEventRepository.count()).isEqualTo(7);
+    }
+
+    @Test
+    public void whenBulkLoading_thenRowsAreMergedAndLogIsRestored() {
+        rawEventBulkRepository.beginBulkLoad(60000);
+        try {
+            assertThat(jdbcTemplate.queryForObject("SELECT PROPERTY_VALUE FROM INFORMATION_SCHEMA.SYSTEM_PROPERTIES " +
+                    "WHERE PROPERTY_NAME = 'hsqldb.log_data'", String.class)).isEqualTo("false");
+            rawEventBulkRepository.mergeAll(Arrays.asList(
+                    new RawEventBuilder().setId(new RawEventId("scsmbstgra", "STARTED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(1491377495200L).createRawEvent(),
+                    new RawEventBuilder().setId(new RawEventId("scsmbstgrd", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495220L).createRawEvent()));
+        } finally {
+            rawEventBulkRepository.endBulkLoad();
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT PROPERTY_VALUE FROM INFORMATION_SCHEMA.SYSTEM_PROPERTIES " +
+                "WHERE PROPERTY_NAME = 'hsqldb.log_data'", String.class)).isEqualTo("true");
+        assertThat(rawEventRepository.count()).isEqualTo(7);
+        assertThat(rawEventRepository.findById(new RawEventId("scsmbstgra", "STARTED")).get().getTimestamp()).isEqualTo(1491377495200L);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.test.logDemo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dao.model.Event;
+import com.test.logDemo.dao.repository.CompactionRepository;
+import com.test.logDemo.dao.repository.EventQueryRepository;
+import com.test.logDemo.dao.repository.EventRepository;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class EventRetentionServiceImplTest {
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Autowired
+    private EventQueryRepository eventQueryRepository;
+    @Autowired
+    private CompactionRepository compactionRepository;
+    @Autowired
+    private AlertQueryService alertQueryService;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @After
+    public void tearDown() {
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    public void whenEventsSpanSeveralDays_thenRangeReadsOnlyMatchingEvents() {
+        long now = System.currentTimeMillis();
+        eventRepository.saveAll(Arrays.asList(event("scsmbstgra", now - DAY), event("scsmbstgrb", now - DAY + 1), event("scsmbstgrc", now)));
+
+        EventRetentionService eventRetentionService = new EventRetentionServiceImpl(eventQueryRepository, compactionRepository, alertQueryService, 0);
+        assertThat(eventRetentionService.findByStartTimestamp(now - DAY, now - DAY + 2)).extracting("id")
+                .containsExactly("scsmbstgra", "scsmbstgrb");
+        assertThat(eventRetentionService.applyRetention()).isZero();
+        assertThat(eventRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void whenRetentionRuns_thenOnlyExpiredEventsAreDeleted() {
+        long now = System.currentTimeMillis();
+        eventRepository.saveAll(Arrays.asList(event("scsmbstgra", now - 3 * DAY), event("scsmbstgrb", now - 2 * DAY - 1), event("scsmbstgrc", now)));
+
+        EventRetentionService eventRetentionService = new EventRetentionServiceImpl(eventQueryRepository, compactionRepository, alertQueryService, 2);
+        assertThat(eventRetentionService.applyRetention()).isEqualTo(2);
+        assertThat(eventRepository.findAll()).extracting("id").containsExactly("scsmbstgrc");
+    }
+
+    private static Event event(String id, long startTimestamp) {
+        Event event = new Event();
+        event.setId(id);
+        event.setDuration(5);
+        event.setStartTimestamp(startTimestamp);
+        event.setAlert(true);
+        return event;
+    }
+}
@@ -33,11 +33,17 @@ public class EventServiceImplTest {
     @Autowired
     private EventService eventService;
     @Autowired
+    private EventServiceImpl eventServiceImpl;
+    @Autowired
     private RawEventRepository rawEventRepository;
     @Autowired
     private EventRepository eventRepository;
     @Autowired
     private DataService dataService;
+    @Autowired
+    private SqlPairingService sqlPairingService;
+    @Autowired
+    private StreamPairingService streamPairingService;
 
     @Before
     public void setUp() {
@@ -72,4 +78,39 @@ public class EventServiceImplTest {
         assertThat(eventRepository.count()).isEqualTo(3);
     }
 
+    @Test
+    public void whenSlicing_thenEverySliceHasBothHalvesAndAllPairsAreProduced() {
+        int sliceSize = 2;
+        long slices = eventServiceImpl.sliceCount(sliceSize);
+        assertThat(slices).isEqualTo(2);
+        for (int i = 0; i < slices; i++) {
+            Pageable slice = dataService.getSliceSortedById(i, sliceSize);
+            List<RawEventDto> finished = eventService.prepareRawEventsByState(slice, State.FINISHED);
+            List<RawEventDto> started = eventService.prepareRawEventsByState(slice, State.STARTED);
+            assertThat(finished).isNotEmpty();
+            assertThat(started).hasSameSizeAs(finished);
+        }
+
+        eventService.addAlertFlagsToAll(sliceSize);
+        assertThat(eventRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void pairAllInDatabase_thenAllEventsAreAddedWithAlerts() {
+        assertThat(sqlPairingService.pairAll()).isEqualTo(3);
+        assertThat(eventRepository.count()).isEqualTo(3);
+        assertThat(eventRepository.findById("scsmbstgra").get().getAlert()).isEqualTo(true);
+        assertThat(eventRepository.findById("scsmbstgra").get().getDuration()).isEqualTo(5);
+        assertThat(eventRepository.findById("scsmbstgrb").get().getAlert()).isNull();
+    }
+
+    @Test
+    public void pairAllFromStream_thenNeighbouringRowsArePaired() {
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgrd", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495210L).createRawEvent());
+        long paired = streamPairingService.pairAll(2, eventRepository::saveAll);
+        assertThat(paired).isEqualTo(3);
+        assertThat(eventRepository.findById("scsmbstgra").get().getAlert()).isEqualTo(true);
+        assertThat(eventRepository.existsById("scsmbstgrd")).isFalse();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.test.logDemo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dao.repository.EventRepository;
+import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.dto.RawEventDto;
+import com.test.logDemo.util.State;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class IngestionServiceImplTest {
+    private static final long WAIT_MILLIS = 10000;
+
+    @Autowired
+    private DataService dataService;
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private RawEventRepository rawEventRepository;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @After
+    public void tearDown() {
+        rawEventRepository.deleteAll();
+        eventRepository.deleteAll();
+    }
+
+    @Test
+    public void whenHalvesArriveInSeparateBatches_thenEventIsPaired() throws InterruptedException {
+        IngestionService ingestionService = new IngestionServiceImpl(dataService, eventService, 10, 100, 10);
+        ingestionService.start();
+        try {
+            assertThat(ingestionService.offer(rawEvent("streama", State.STARTED, 1491377495212L))).isTrue();
+            awaitRawEvents(1);
+            assertThat(ingestionService.offer(rawEvent("streama", State.FINISHED, 1491377495217L))).isTrue();
+        } finally {
+            ingestionService.stop();
+        }
+
+        assertThat(eventRepository.findById("streama").get().getDuration()).isEqualTo(5);
+    }
+
+    @Test
+    public void whenTooManyHalvesAreUnmatched_thenOldestIsLeftForBatchRun() throws InterruptedException {
+        IngestionService ingestionService = new IngestionServiceImpl(dataService, eventService, 10, 100, 1);
+        assertThat(ingestionService.offer(rawEvent("streama", State.STARTED, 1491377495212L))).isTrue();
+        assertThat(ingestionService.offer(rawEvent("streamb", State.STARTED, 1491377495213L))).isTrue();
+        assertThat(ingestionService.offer(rawEvent("streama", State.FINISHED, 1491377495217L))).isTrue();
+        ingestionService.start();
+        ingestionService.stop();
+
+        assertThat(rawEventRepository.count()).isEqualTo(3);
+        assertThat(eventRepository.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void whenOneEventCannotBeSaved_thenRestOfBatchIsSaved() throws InterruptedException {
+        StringBuilder tooLong = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            tooLong.append('x');
+        }
+        IngestionService ingestionService = new IngestionServiceImpl(dataService, eventService, 10, 100, 10);
+        assertThat(ingestionService.offer(rawEvent("streama", State.STARTED, 1491377495212L))).isTrue();
+        assertThat(ingestionService.offer(rawEvent(tooLong.toString(), State.STARTED, 1491377495213L))).isTrue();
+        assertThat(ingestionService.offer(rawEvent("streama", State.FINISHED, 1491377495217L))).isTrue();
+        ingestionService.start();
+        ingestionService.stop();
+
+        assertThat(ingestionService.failed()).isEqualTo(1);
+        assertThat(rawEventRepository.count()).isEqualTo(2);
+        assertThat(eventRepository.findById("streama").isPresent()).isTrue();
+    }
+
+    @Test
+    public void whenQueueStaysFull_thenOfferIsRefused() throws InterruptedException {
+        IngestionService ingestionService = new IngestionServiceImpl(dataService, eventService, 1, 10, 10);
+        assertThat(ingestionService.offer(rawEvent("streama", State.STARTED, 1491377495212L))).isTrue();
+        assertThat(ingestionService.offer(rawEvent("streamb", State.STARTED, 1491377495213L))).isFalse();
+        assertThat(ingestionService.backlog()).isEqualTo(1);
+    }
+
+    private void awaitRawEvents(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (rawEventRepository.count() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(rawEventRepository.count()).isEqualTo(count);
+    }
+
+    private static RawEventDto rawEvent(String id, State state, long timestamp) {
+        return new RawEventDto(id, state.get(), null, null, timestamp);
+    }
+}
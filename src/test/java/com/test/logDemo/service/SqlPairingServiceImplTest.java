@@ -0,0 +1,76 @@
+package com.test.logDemo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.test.logDemo.LogDemoApplication;
+import com.test.logDemo.dao.model.RawEventBuilder;
+import com.test.logDemo.dao.model.RawEventId;
+import com.test.logDemo.dao.repository.EventRepository;
+import com.test.logDemo.dao.repository.RawEventRepository;
+import com.test.logDemo.execution.ExecutionStrategy;
+
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = LogDemoApplication.class,
+        initializers = ConfigFileApplicationContextInitializer.class)
+public class SqlPairingServiceImplTest {
+    private static final int PAIRS = 40;
+    private static final String EVENTS = "SELECT ID, DURATION, TYPE, HOST, ALERT, START_TIMESTAMP FROM EVENTS ORDER BY ID";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ExecutionStrategy executionStrategy;
+    @Autowired
+    private RawEventRepository rawEventRepository;
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Before
+    public void setUp() {
+        eventRepository.deleteAll();
+        rawEventRepository.deleteAll();
+        for (int i = 0; i < PAIRS; i++) {
+            String id = "scsmbstg" + (char) ('a' + i % 26) + (char) ('a' + i / 26);
+            long start = 1491377495200L + i;
+            rawEventRepository.save(new RawEventBuilder().setId(new RawEventId(id, "STARTED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(start).createRawEvent());
+            rawEventRepository.save(new RawEventBuilder().setId(new RawEventId(id, "FINISHED")).setType("APPLICATION_LOG").setHost("12345").setTimestamp(start + i % 9).createRawEvent());
+        }
+        rawEventRepository.save(new RawEventBuilder().setId(new RawEventId("scsmbstgzz", "STARTED")).setType(null).setHost(null).setTimestamp(1491377495210L).createRawEvent());
+    }
+
+    @After
+    public void tearDown() {
+        eventRepository.deleteAll();
+        rawEventRepository.deleteAll();
+    }
+
+    @Test
+    public void whenPairingInRanges_thenEventsAreTheSameAsInOneRange() {
+        SqlPairingServiceImpl single = new SqlPairingServiceImpl(jdbcTemplate, transactionManager, executionStrategy, 1);
+        SqlPairingServiceImpl ranged = new SqlPairingServiceImpl(jdbcTemplate, transactionManager, executionStrategy, 4);
+
+        assertThat(single.pairAll()).isEqualTo(PAIRS);
+        List<Map<String, Object>> expected = jdbcTemplate.queryForList(EVENTS);
+        eventRepository.deleteAll();
+
+        assertThat(ranged.rangeBounds()).hasSize(3);
+        assertThat(ranged.pairAll()).isEqualTo(PAIRS);
+        assertThat(jdbcTemplate.queryForList(EVENTS)).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,35 @@
+package com.test.logDemo.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ScalableBloomFilterTest {
+
+    @Test
+    public void whenKeysAdded_thenAllAreReported() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("id" + i + ":STARTED");
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("id" + i + ":STARTED")).isTrue();
+        }
+        assertThat(filter.stageCount()).isGreaterThan(1);
+    }
+
+    @Test
+    public void whenFilterGrows_thenFalsePositiveRateStaysBounded() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20000; i++) {
+            filter.put("id" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 20000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives / 20000.0).isLessThan(0.01);
+    }
+}
@@ -15,7 +15,18 @@ CREATE TABLE IF NOT EXISTS EVENTS (
 	TYPE VARCHAR(20),
 	HOST VARCHAR(10),
 	ALERT BOOLEAN,
+	START_TIMESTAMP BIGINT,
 	PRIMARY KEY (ID)
 )
 
-SET SCHEMA PUBLIC;
\ No newline at end of file
+SET SCHEMA PUBLIC;
+
+CREATE INDEX IF NOT EXISTS IDX_RAW_EVENTS_STATE_ID ON RAW_EVENTS (STATE, ID);
+
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_HOST_TYPE_DURATION ON EVENTS (HOST, TYPE, DURATION);
+
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_TYPE_DURATION ON EVENTS (TYPE, DURATION);
+
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_ALERT_DURATION ON EVENTS (ALERT, DURATION);
+
+CREATE INDEX IF NOT EXISTS IDX_EVENTS_START_TIMESTAMP ON EVENTS (START_TIMESTAMP);